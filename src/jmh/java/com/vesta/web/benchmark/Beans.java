@@ -0,0 +1,23 @@
+package com.vesta.web.benchmark;
+
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+
+/**
+ * Inyección manual de campos @Autowired/@Value para montar servicios sin contexto de Spring
+ */
+public final class Beans {
+
+    private Beans() {
+    }
+
+    public static void set(Object target, String field, Object value) {
+        Field f = ReflectionUtils.findField(target.getClass(), field);
+        if (f == null) {
+            throw new IllegalArgumentException("Campo no encontrado: " + field);
+        }
+        ReflectionUtils.makeAccessible(f);
+        ReflectionUtils.setField(f, target, value);
+    }
+}
@@ -0,0 +1,107 @@
+package com.vesta.web.config;
+
+import com.vesta.web.benchmark.Beans;
+import com.vesta.web.benchmark.StubBackend;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendimiento de apiExecutor con hilos de plataforma (pool por defecto: 32 hilos, cola 200) frente a
+ * hilos virtuales, lanzando una ráfaga de llamadas bloqueantes con RestTemplate contra un backend simulado
+ * que tarda {@code latenciaMs} en responder, como hace el fan-out de ApiService.
+ *
+ * Resultado en llamadas por segundo. Con el pool de plataforma el techo es hilos / latencia; con hilos
+ * virtuales lo pone api.async.virtual.max-concurrency. El pool de conexiones se dimensiona para no limitar.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HilosVirtualesBenchmark {
+
+    // Llamadas simultáneas por ráfaga; cabe en cola + máximo del pool de plataforma (200 + 32) sin rechazos
+    private static final int RAFAGA = 200;
+
+    @Param({"platform", "virtual"})
+    public String modo;
+
+    @Param({"50"})
+    public int latenciaMs;
+
+    private StubBackend backend;
+    private AsyncTaskExecutor executor;
+    private PoolingHttpClientConnectionManager conexiones;
+    private RestTemplate restTemplate;
+    private String url;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        backend = new StubBackend(Duration.ofMillis(latenciaMs));
+        url = backend.getApiUrl() + "/seguros";
+
+        conexiones = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(RAFAGA * 2)
+                .setMaxConnPerRoute(RAFAGA * 2)
+                .build();
+        restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(
+                HttpClients.custom().setConnectionManager(conexiones).build()));
+
+        // Misma configuración que la aplicación con los valores por defecto de application.properties
+        AsyncConfig config = new AsyncConfig();
+        Beans.set(config, "virtualThreads", "virtual".equals(modo));
+        Beans.set(config, "virtualMaxConcurrency", 500);
+        Beans.set(config, "maxSize", 32);
+        Beans.set(config, "queueCapacity", 200);
+        executor = config.apiExecutor();
+        if (executor instanceof InitializingBean pool) {
+            pool.afterPropertiesSet();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (executor instanceof DisposableBean pool) {
+            pool.destroy();
+        }
+        conexiones.close();
+        backend.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAFAGA)
+    public void rafaga() {
+        List<CompletableFuture<String>> llamadas = new ArrayList<>(RAFAGA);
+        for (int i = 0; i < RAFAGA; i++) {
+            llamadas.add(CompletableFuture.supplyAsync(() -> restTemplate.getForObject(url, String.class), executor));
+        }
+        CompletableFuture.allOf(llamadas.toArray(CompletableFuture[]::new)).join();
+    }
+}
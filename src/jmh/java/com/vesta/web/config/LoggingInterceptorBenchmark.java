@@ -0,0 +1,119 @@
+package com.vesta.web.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste del LoggingInterceptor por respuesta, con DEBUG activado y desactivado, consumiendo el body entero.
+ * El logger no tiene appenders: se mide la captura, no la escritura en disco.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggingInterceptorBenchmark {
+
+    @Param({ "true", "false" })
+    private boolean debug;
+
+    // Tamaño del body: respuesta pequeña (login) y listado grande (/ordenes)
+    @Param({ "512", "262144" })
+    private int bodySize;
+
+    private LoggingInterceptor interceptor;
+    private HttpRequest request;
+    private ClientHttpRequestExecution execution;
+
+    @Setup
+    public void setup() {
+        Logger logger = (Logger) LoggerFactory.getLogger(LoggingInterceptor.class);
+        logger.detachAndStopAllAppenders();
+        logger.setAdditive(false);
+        logger.setLevel(debug ? Level.DEBUG : Level.INFO);
+
+        interceptor = new LoggingInterceptor(2048);
+
+        byte[] body = new byte[bodySize];
+        Arrays.fill(body, (byte) 'a');
+
+        request = new HttpRequest() {
+            @Override
+            public HttpMethod getMethod() {
+                return HttpMethod.GET;
+            }
+
+            @Override
+            public URI getURI() {
+                return URI.create("http://localhost:8080/api/ordenes");
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return new HttpHeaders();
+            }
+        };
+
+        execution = (req, reqBody) -> new ClientHttpResponse() {
+            private final InputStream in = new ByteArrayInputStream(body);
+
+            @Override
+            public HttpStatusCode getStatusCode() {
+                return HttpStatus.OK;
+            }
+
+            @Override
+            public String getStatusText() {
+                return "OK";
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return new HttpHeaders();
+            }
+
+            @Override
+            public InputStream getBody() {
+                return in;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Benchmark
+    public long interceptar() throws Exception {
+        try (ClientHttpResponse response = interceptor.intercept(request, new byte[0], execution)) {
+            return response.getBody().transferTo(OutputStream.nullOutputStream());
+        }
+    }
+}
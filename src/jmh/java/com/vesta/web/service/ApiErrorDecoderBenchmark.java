@@ -0,0 +1,70 @@
+package com.vesta.web.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vesta.web.benchmark.StubBackend;
+import com.vesta.web.dto.ApiError;
+import com.vesta.web.dto.ApiResponseWrapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodificación de un 401 de la API: ObjectMapper nuevo por llamada y body leído dos veces
+ * (como hacía ApiService) frente a ApiErrorDecoder. Con -prof gc se ve la diferencia en gc.alloc.rate.norm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApiErrorDecoderBenchmark {
+
+    private ApiErrorDecoder decoder;
+    private HttpClientErrorException error401;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        decoder = new ApiErrorDecoder(objectMapper);
+
+        error401 = HttpClientErrorException.create(HttpStatus.UNAUTHORIZED, "Unauthorized", new HttpHeaders(),
+                StubBackend.ERROR_401.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String anterior() {
+        String responseBody = error401.getResponseBodyAsString();
+        try {
+            ObjectMapper mapper = new ObjectMapper();
+            ApiResponseWrapper<?> errorResponse = mapper.readValue(error401.getResponseBodyAsString(),
+                    ApiResponseWrapper.class);
+            if (errorResponse != null && errorResponse.getMessage() != null) {
+                return errorResponse.getMessage();
+            }
+        } catch (Exception parseException) {
+            // Igual que antes: caer al cuerpo tal cual
+        }
+        return "Error " + error401.getStatusCode() + ": " + responseBody;
+    }
+
+    @Benchmark
+    public ApiError decoder() {
+        return decoder.decode(error401);
+    }
+}
@@ -0,0 +1,139 @@
+package com.vesta.web.service;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vesta.web.benchmark.Beans;
+import com.vesta.web.benchmark.StubBackend;
+import com.vesta.web.config.LoggingInterceptor;
+import com.vesta.web.dto.ApiResponseWrapper;
+import com.vesta.web.dto.AuthResponseDTO;
+import com.vesta.web.dto.CartItem;
+import com.vesta.web.metrics.ApiMetrics;
+import com.vesta.web.resilience.BackendGuards;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.client.RestTemplate;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caminos calientes de ApiService: login (ida y vuelta + deserialización del wrapper),
+ * y construcción de la petición de checkout. La decodificación de errores está en ApiErrorDecoderBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApiServiceBenchmark {
+
+    private StubBackend backend;
+    private ApiService apiService;
+    private ObjectMapper objectMapper;
+    private JavaType loginType;
+    private byte[] loginJson;
+    private List<CartItem> carrito;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        backend = new StubBackend();
+
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory());
+        restTemplate.getMessageConverters().stream()
+                .filter(MappingJackson2HttpMessageConverter.class::isInstance)
+                .map(MappingJackson2HttpMessageConverter.class::cast)
+                .forEach(converter -> converter.setObjectMapper(objectMapper));
+        restTemplate.getInterceptors().add(new LoggingInterceptor(2048));
+
+        apiService = new ApiService(200);
+        Beans.set(apiService, "restTemplate", restTemplate);
+        Beans.set(apiService, "apiExecutor", Executors.newSingleThreadExecutor());
+        Beans.set(apiService, "guards", new BackendGuards(new StandardEnvironment()));
+        Beans.set(apiService, "apiErrors", new ApiErrorDecoder(objectMapper));
+        Beans.set(apiService, "metrics", new ApiMetrics(new SimpleMeterRegistry(), ObservationRegistry.NOOP));
+        Beans.set(apiService, "apiUrl", backend.getApiUrl());
+        Beans.set(apiService, "ttlOrdenes", Duration.ofSeconds(30));
+        Beans.set(apiService, "ttlSolicitudes", Duration.ofSeconds(60));
+        Beans.set(apiService, "ttlSiniestros", Duration.ofSeconds(15));
+
+        loginType = objectMapper.constructType(
+                new ParameterizedTypeReference<ApiResponseWrapper<AuthResponseDTO>>() {
+                }.getType());
+        loginJson = StubBackend.LOGIN_OK.getBytes(StandardCharsets.UTF_8);
+
+        carrito = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            carrito.add(new CartItem(String.valueOf(i), "Seguro " + i, new BigDecimal("9.99"), null, i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        backend.close();
+    }
+
+    /**
+     * Login completo contra el backend simulado (RestTemplate + interceptores + deserialización)
+     */
+    @Benchmark
+    public AuthResponseDTO login() {
+        return apiService.login("ana@vesta.es", "secreto");
+    }
+
+    /**
+     * Solo la deserialización de ApiResponseWrapper<AuthResponseDTO>, resolviendo el tipo en cada llamada
+     * como hace ParameterizedTypeReference dentro de RestTemplate
+     */
+    @Benchmark
+    public Object loginWrapperDeserializacion() throws Exception {
+        JavaType type = objectMapper.constructType(
+                new ParameterizedTypeReference<ApiResponseWrapper<AuthResponseDTO>>() {
+                }.getType());
+        return objectMapper.readValue(loginJson, type);
+    }
+
+    /**
+     * Deserialización con el tipo ya resuelto (referencia de coste mínimo)
+     */
+    @Benchmark
+    public Object loginWrapperDeserializacionTipoResuelto() throws Exception {
+        return objectMapper.readValue(loginJson, loginType);
+    }
+
+    @Benchmark
+    public Map<String, Object> checkoutPeticion() {
+        return ApiService.construirPeticionCheckout(42L, carrito);
+    }
+
+    @Benchmark
+    public void checkoutCompleto() {
+        apiService.realizarCheckout(42L, carrito, null);
+    }
+}
@@ -0,0 +1,118 @@
+package com.vesta.web.service;
+
+import com.vesta.web.benchmark.Beans;
+import com.vesta.web.config.FragmentosDialect;
+import com.vesta.web.session.SesionUsuario;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.context.IExpressionContext;
+import org.thymeleaf.linkbuilder.StandardLinkBuilder;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * Render completo de las plantillas más pesadas con y sin la caché de FragmentosCompartidos, con el
+ * motor configurado como en producción (plantillas parseadas en caché). La diferencia entre
+ * cache=true y cache=false es la CPU que se ahorra cada petición.
+ *
+ * register incluye el banner de cookies; faq y admin/dashboard no usan fragmentos comunes y sirven
+ * de referencia (la caché no debe costarles nada). "fragments/header" mide la cabecera sola.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlantillasBenchmark {
+
+    @Param({"faq", "register", "admin/dashboard", "fragments/header"})
+    public String plantilla;
+
+    @Param({"true", "false"})
+    public boolean cache;
+
+    private SpringTemplateEngine motor;
+    private Context context;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+        resolver.setCacheable(true);
+
+        motor = new SpringTemplateEngine();
+        motor.setTemplateResolver(resolver);
+        // Sin petición HTTP: las URLs @{/...} se resuelven con contexto raíz
+        motor.setLinkBuilder(new StandardLinkBuilder() {
+            @Override
+            protected String computeContextPath(IExpressionContext context, String base, Map<String, Object> parameters) {
+                return "";
+            }
+        });
+
+        FragmentosCompartidos fragmentos = new FragmentosCompartidos(motor, new DefaultResourceLoader(), 2000);
+        Beans.set(fragmentos, "habilitado", cache);
+        Beans.set(fragmentos, "ttl", Duration.ofHours(1));
+        Beans.set(fragmentos, "plantillasCacheadas", true);
+        motor.addDialect(new FragmentosDialect(fragmentos));
+
+        SesionUsuario usuario = new SesionUsuario("token", "ADMIN", "Ana García", 42L);
+        context = new Context();
+        // Lo que deja SesionUsuarioArgumentResolver en la petición
+        context.setVariable(SesionUsuario.ATRIBUTO_VIGENTE, usuario);
+        context.setVariable("nombreUsuario", usuario.getNombre());
+        context.setVariable("ordenes", filas(20, i -> Map.of(
+                "referencia", "REF-" + i, "fecha", "2025-01-15T10:00:00", "usuarioId", i,
+                "total", 19.99 * i, "estado", "COMPLETADA")));
+        context.setVariable("solicitudes", filas(10, i -> Map.of(
+                "id", i, "tipoSolicitud", "ACCESO", "usuarioId", i, "descripcion", "Solicitud " + i,
+                "fechaSolicitud", "2025-01-15T10:00:00", "estado", i % 2 == 0 ? "PENDIENTE" : "COMPLETADA")));
+        context.setVariable("siniestros", List.of());
+
+        String html = render();
+        System.out.printf("%n%s: %d caracteres%n", plantilla, html.length());
+    }
+
+    @Benchmark
+    public String render() {
+        if (plantilla.startsWith("fragments/")) {
+            // Como lo incluye cada página del área de cliente
+            return motor.process(plantilla, Set.of("header-nav"), context);
+        }
+        return motor.process(plantilla, context);
+    }
+
+    private static List<Map<String, Object>> filas(int n, IntFunction<Map<String, Object>> fila) {
+        List<Map<String, Object>> filas = new ArrayList<>(n);
+        for (int i = 1; i <= n; i++) {
+            filas.add(new HashMap<>(fila.apply(i)));
+        }
+        return filas;
+    }
+}
@@ -0,0 +1,121 @@
+package com.vesta.web.session;
+
+import com.vesta.web.dto.CartItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste y tamaño de serializar el estado de sesión, como haría un almacén de sesiones externo:
+ * atributos sueltos (token, rol, usuarioNombre, usuarioId, carrito), cada uno en su propio stream,
+ * frente al atributo único SesionUsuario.
+ *
+ * Los tamaños en bytes se imprimen en el setup; con -prof gc se comparan además las asignaciones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SesionUsuarioBenchmark {
+
+    private static final String TOKEN = "eyJhbGciOiJIUzI1NiJ9."
+            + "eyJzdWIiOiJhbmFAdmVzdGEuZXMiLCJyb2wiOiJDTElFTlRFIiwiaWF0IjoxNzE3MDAwMDAwLCJleHAiOjE3MTcwODY0MDB9."
+            + "Jx0m3pWb7l1Hq9d2cM3y0h5m5Y0Q0h7m2hZk9c6k1sA";
+
+    @Param({"0", "5"})
+    public int itemsCarrito;
+
+    private Map<String, Object> atributosSueltos;
+    private SesionUsuario sesion;
+    private byte[] sesionSerializada;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        sesion = new SesionUsuario(TOKEN, "CLIENTE", "Ana García", 42L);
+        List<ItemSerializable> carrito = new ArrayList<>();
+        for (int i = 1; i <= itemsCarrito; i++) {
+            CartItem item = new CartItem(String.valueOf(i), "Seguro " + i, new BigDecimal("9.99"),
+                    "/images/productos/viaje.png", 1);
+            sesion.getCarrito().agregar(item);
+            carrito.add(new ItemSerializable(item));
+        }
+
+        atributosSueltos = new LinkedHashMap<>();
+        atributosSueltos.put("token", TOKEN);
+        atributosSueltos.put("rol", "CLIENTE");
+        atributosSueltos.put("usuarioNombre", "Ana García");
+        atributosSueltos.put("usuarioId", 42L);
+        atributosSueltos.put("carrito", new ArrayList<>(carrito));
+
+        sesionSerializada = serializar(sesion);
+        System.out.printf("%nTamaño serializado (%d items): atributos sueltos=%d bytes, SesionUsuario=%d bytes%n",
+                itemsCarrito, atributosSueltos(), sesionSerializada.length);
+    }
+
+    @Benchmark
+    public int serializarAtributosSueltos() throws IOException {
+        return atributosSueltos();
+    }
+
+    @Benchmark
+    public byte[] serializarSesionUsuario() throws IOException {
+        return serializar(sesion);
+    }
+
+    @Benchmark
+    public Object deserializarSesionUsuario() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(sesionSerializada))) {
+            return in.readObject();
+        }
+    }
+
+    // Un stream por atributo, igual que los almacenes que guardan cada atributo por separado
+    private int atributosSueltos() throws IOException {
+        int total = 0;
+        for (Object valor : atributosSueltos.values()) {
+            total += serializar(valor).length;
+        }
+        return total;
+    }
+
+    private static byte[] serializar(Object valor) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(valor);
+        }
+        return bytes.toByteArray();
+    }
+
+    // CartItem no es Serializable: réplica con los mismos campos para medir el formato anterior
+    private record ItemSerializable(String seguroId, String nombre, BigDecimal precio, String imagenUrl,
+            Integer cantidad) implements Serializable {
+
+        ItemSerializable(CartItem item) {
+            this(item.getSeguroId(), item.getNombre(), item.getPrecio(), item.getImagenUrl(), item.getCantidad());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.vesta.web.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Agrupa llamadas idénticas concurrentes (single-flight)
+ *
+ * Mientras una llamada con una clave está en curso, las siguientes con la misma clave no la repiten:
+ * esperan y reciben el mismo resultado (o la misma excepción). No guarda nada una vez terminada.
+ */
+public class SingleFlight<K, V> {
+
+    private final String name;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> enCurso = new ConcurrentHashMap<>();
+
+    private final LongAdder ejecutadas = new LongAdder();
+    private final LongAdder colapsadas = new LongAdder();
+
+    public SingleFlight(String name) {
+        this.name = name;
+    }
+
+    public V execute(K key, Supplier<V> llamada) {
+        CompletableFuture<V> propia = new CompletableFuture<>();
+        CompletableFuture<V> existente = enCurso.putIfAbsent(key, propia);
+
+        if (existente != null) {
+            colapsadas.increment();
+            return esperar(existente);
+        }
+
+        ejecutadas.increment();
+        try {
+            V resultado = llamada.get();
+            propia.complete(resultado);
+            return resultado;
+        } catch (RuntimeException | Error e) {
+            propia.completeExceptionally(e);
+            throw e;
+        } finally {
+            enCurso.remove(key, propia);
+        }
+    }
+
+    /**
+     * Las llamadas en curso con estas claves siguen, pero las siguientes ya no se unen a ellas
+     * (p. ej. tras una escritura: una lectura empezada antes no vale para quien llega después)
+     */
+    public void olvidarSi(Predicate<K> predicado) {
+        enCurso.keySet().removeIf(predicado);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getEjecutadas() {
+        return ejecutadas.sum();
+    }
+
+    public long getColapsadas() {
+        return colapsadas.sum();
+    }
+
+    public int getEnCurso() {
+        return enCurso.size();
+    }
+
+    /**
+     * Resumen de contadores para diagnóstico
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("executed", getEjecutadas());
+        stats.put("collapsed", getColapsadas());
+        stats.put("inFlight", getEnCurso());
+        return stats;
+    }
+
+    private V esperar(CompletableFuture<V> existente) {
+        try {
+            return existente.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
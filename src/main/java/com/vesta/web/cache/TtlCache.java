@@ -0,0 +1,171 @@
+package com.vesta.web.cache;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Caché en memoria acotada, con caducidad por entrada y desalojo LRU por tamaño
+ *
+ * Usa un ReentrantLock en lugar de synchronized para no fijar hilos virtuales al carrier.
+ */
+public class TtlCache<K, V> {
+
+    private final String name;
+    private final int maxEntries;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public TtlCache(String name, int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries debe ser positivo: " + maxEntries);
+        }
+        this.name = name;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Devuelve el valor vigente o null si no existe o ha caducado
+     */
+    public V get(K key) {
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            if (entry.isExpired(System.nanoTime())) {
+                entries.remove(key);
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(K key, V value, Duration ttl) {
+        if (ttl.isZero() || ttl.isNegative()) {
+            return;
+        }
+        long expiresAt = System.nanoTime() + ttl.toNanos();
+        lock.lock();
+        try {
+            entries.put(key, new Entry<>(value, expiresAt));
+            evictIfNeeded(System.nanoTime());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidate(K key) {
+        lock.lock();
+        try {
+            entries.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateIf(Predicate<K> predicate) {
+        lock.lock();
+        try {
+            entries.keySet().removeIf(predicate);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Resumen de contadores para diagnóstico
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("size", size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", getHits());
+        stats.put("misses", getMisses());
+        stats.put("evictions", getEvictions());
+        return stats;
+    }
+
+    private void evictIfNeeded(long now) {
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+        // Primero las caducadas; si no basta, las menos usadas recientemente (orden de acceso)
+        Iterator<Entry<V>> it = entries.values().iterator();
+        while (it.hasNext() && entries.size() > maxEntries) {
+            if (it.next().isExpired(now)) {
+                it.remove();
+                evictions.increment();
+            }
+        }
+        it = entries.values().iterator();
+        while (it.hasNext() && entries.size() > maxEntries) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.vesta.web.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.support.ContextPropagatingTaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Ejecutor para las llamadas asíncronas a la API (fan-out de ApiService)
+ *
+ * Con {@code spring.threads.virtual.enabled=true} Tomcat atiende las peticiones en hilos virtuales
+ * y este ejecutor también lanza cada llamada en un hilo virtual, limitado por {@code api.async.virtual.max-concurrency}.
+ * Sin hilos virtuales, un pool de {@code api.async.max-size} hilos que se crean según hacen falta y se
+ * cierran tras un minuto parados. Core = max a propósito: un ThreadPoolExecutor solo pasa de core
+ * cuando la cola está llena, así que con core menor que max y una cola grande nunca crecería.
+ * Las tareas heredan el contexto de traza (y el MDC traceId/spanId) del hilo que las lanza.
+ */
+@Configuration
+public class AsyncConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncConfig.class);
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${api.async.virtual.max-concurrency:500}")
+    private int virtualMaxConcurrency;
+
+    @Value("${api.async.max-size:32}")
+    private int maxSize;
+
+    @Value("${api.async.queue-capacity:200}")
+    private int queueCapacity;
+
+    @Bean(name = "apiExecutor")
+    public AsyncTaskExecutor apiExecutor() {
+        if (virtualThreads) {
+            logger.info("Configurando ejecutor de API con hilos virtuales (concurrencia máx: {})",
+                    virtualMaxConcurrency);
+
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("api-vt-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(virtualMaxConcurrency);
+            executor.setTaskTerminationTimeout(10_000);
+            executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+            return executor;
+        }
+
+        logger.info("Configurando ejecutor de API: hilos={}, cola={}", maxSize, queueCapacity);
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setKeepAliveSeconds(60);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("api-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+        return executor;
+    }
+}
@@ -0,0 +1,48 @@
+package com.vesta.web.config;
+
+import com.vesta.web.service.FragmentosCompartidos;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.context.IExpressionContext;
+import org.thymeleaf.dialect.AbstractDialect;
+import org.thymeleaf.dialect.IExpressionObjectDialect;
+import org.thymeleaf.expression.IExpressionObjectFactory;
+
+import java.util.Set;
+
+/**
+ * Expone FragmentosCompartidos en las plantillas como {@code #fragmentos}
+ * (p. ej. {@code th:utext="${#fragmentos.cookieBanner()}"}). Spring Boot añade al motor de
+ * Thymeleaf cualquier IDialect registrado como bean.
+ */
+@Component
+public class FragmentosDialect extends AbstractDialect implements IExpressionObjectDialect {
+
+    private static final String NOMBRE = "fragmentos";
+
+    private final FragmentosCompartidos fragmentos;
+
+    public FragmentosDialect(FragmentosCompartidos fragmentos) {
+        super("Vesta Fragmentos");
+        this.fragmentos = fragmentos;
+    }
+
+    @Override
+    public IExpressionObjectFactory getExpressionObjectFactory() {
+        return new IExpressionObjectFactory() {
+            @Override
+            public Set<String> getAllExpressionObjectNames() {
+                return Set.of(NOMBRE);
+            }
+
+            @Override
+            public Object buildObject(IExpressionContext context, String expressionObjectName) {
+                return NOMBRE.equals(expressionObjectName) ? fragmentos : null;
+            }
+
+            @Override
+            public boolean isCacheable(String expressionObjectName) {
+                return true;
+            }
+        };
+    }
+}
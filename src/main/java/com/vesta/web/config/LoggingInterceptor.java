@@ -0,0 +1,169 @@
+package com.vesta.web.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Interceptor para logging de requests y responses
+ *
+ * Si DEBUG está desactivado no hace ningún trabajo. Si está activo, no bufferiza la respuesta:
+ * copia como mucho {@code maxBodyBytes} bytes del body mientras el consumidor lo lee
+ * y escribe la traza al terminar la lectura o al cerrar la respuesta.
+ */
+public class LoggingInterceptor implements ClientHttpRequestInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(LoggingInterceptor.class);
+
+    private final int maxBodyBytes;
+
+    public LoggingInterceptor(int maxBodyBytes) {
+        this.maxBodyBytes = Math.max(0, maxBodyBytes);
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+
+        if (!log.isDebugEnabled()) {
+            return execution.execute(request, body);
+        }
+
+        log.debug(">>> Request: {} {}", request.getMethod(), request.getURI());
+
+        // Ejecutar request
+        ClientHttpResponse response = execution.execute(request, body);
+        return new LoggingResponse(request, response, maxBodyBytes);
+    }
+
+    /**
+     * Decorador de la respuesta que captura el prefijo del body sin alterar el flujo
+     */
+    private static final class LoggingResponse implements ClientHttpResponse {
+
+        private final HttpRequest request;
+        private final ClientHttpResponse delegate;
+        private final byte[] prefix;
+        private int prefixLength;
+        private long totalBytes;
+        private InputStream body;
+        private boolean logged;
+
+        LoggingResponse(HttpRequest request, ClientHttpResponse delegate, int maxBodyBytes) {
+            this.request = request;
+            this.delegate = delegate;
+            this.prefix = new byte[maxBodyBytes];
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                body = new CapturingInputStream(delegate.getBody());
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            logResponse();
+            delegate.close();
+        }
+
+        private void capture(byte[] bytes, int offset, int length) {
+            totalBytes += length;
+            int toCopy = Math.min(length, prefix.length - prefixLength);
+            if (toCopy > 0) {
+                System.arraycopy(bytes, offset, prefix, prefixLength, toCopy);
+                prefixLength += toCopy;
+            }
+        }
+
+        private void capture(byte b) {
+            totalBytes++;
+            if (prefixLength < prefix.length) {
+                prefix[prefixLength++] = b;
+            }
+        }
+
+        private void logResponse() {
+            if (logged) {
+                return;
+            }
+            logged = true;
+
+            String status;
+            try {
+                status = String.valueOf(delegate.getStatusCode());
+            } catch (IOException e) {
+                status = "?";
+            }
+
+            String responseBody = new String(prefix, 0, prefixLength, StandardCharsets.UTF_8);
+            if (totalBytes > prefixLength) {
+                responseBody += "... [truncado, " + totalBytes + " bytes leídos]";
+            }
+            log.debug("<<< Response: {} {} - Status: {} - Body: {}",
+                    request.getMethod(), request.getURI(), status, responseBody);
+        }
+
+        private final class CapturingInputStream extends FilterInputStream {
+
+            CapturingInputStream(InputStream in) {
+                super(in);
+            }
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b == -1) {
+                    logResponse();
+                } else {
+                    capture((byte) b);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n == -1) {
+                    logResponse();
+                } else {
+                    capture(b, off, n);
+                }
+                return n;
+            }
+
+            @Override
+            public void close() throws IOException {
+                logResponse();
+                super.close();
+            }
+        }
+    }
+}
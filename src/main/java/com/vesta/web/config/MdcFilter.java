@@ -0,0 +1,83 @@
+package com.vesta.web.config;
+
+import com.vesta.web.session.CookieIdentidad;
+import com.vesta.web.session.Identidad;
+import com.vesta.web.session.SesionUsuario;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.slf4j.MDC;
+import org.springframework.core.annotation.Order;
+import org.springframework.session.web.http.SessionRepositoryFilter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Añade al MDC la sesión y el usuario de cada petición para que salgan en el log JSON
+ * (traceId y spanId los pone Micrometer Tracing).
+ *
+ * De la sesión solo se registra un hash corto: el id real permitiría suplantarla a quien lea los logs.
+ * Con la cookie de identidad activa el usuario sale de ella y no se toca la sesión.
+ * Los recursos estáticos y actuator no pasan por aquí: con Spring Session JDBC cada lectura de la
+ * sesión es un SELECT (y un UPDATE del último acceso) por cada CSS, JS o imagen.
+ */
+@Component
+// Después del filtro de Spring Session, para ver la sesión del almacén compartido
+@Order(SessionRepositoryFilter.DEFAULT_ORDER + 1)
+public class MdcFilter extends OncePerRequestFilter {
+
+    static final String SESSION = "sessionId";
+    static final String USUARIO = "usuarioId";
+
+    private static final List<String> SIN_SESION = List.of("/css/", "/js/", "/images/", "/actuator/");
+
+    private final CookieIdentidad cookieIdentidad;
+
+    public MdcFilter(CookieIdentidad cookieIdentidad) {
+        this.cookieIdentidad = cookieIdentidad;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String ruta = request.getRequestURI().substring(request.getContextPath().length());
+        return ruta.equals("/favicon.ico") || ruta.equals("/actuator")
+                || SIN_SESION.stream().anyMatch(ruta::startsWith);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (cookieIdentidad.isHabilitada()) {
+            // Con la cookie de identidad no se consulta el almacén de sesiones solo para el log
+            Identidad identidad = cookieIdentidad.leer(request);
+            if (identidad != null && identidad.getUsuarioId() != null) {
+                MDC.put(USUARIO, String.valueOf(identidad.getUsuarioId()));
+            }
+        } else {
+            registrarSesion(request);
+        }
+
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            MDC.remove(SESSION);
+            MDC.remove(USUARIO);
+        }
+    }
+
+    private void registrarSesion(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            MDC.put(SESSION, Integer.toHexString(session.getId().hashCode()));
+            SesionUsuario usuario = SesionUsuario.de(session);
+            if (usuario != null && usuario.getUsuarioId() != null) {
+                MDC.put(USUARIO, String.valueOf(usuario.getUsuarioId()));
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.vesta.web.config;
+
+import com.vesta.web.imagenes.VolumenImagenes;
+import com.vesta.web.resilience.BackendGuard;
+import com.vesta.web.resilience.BackendGuards;
+import com.vesta.web.resilience.CircuitBreaker;
+import com.vesta.web.service.ColaCheckout;
+import io.micrometer.common.KeyValue;
+import io.micrometer.common.KeyValues;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.observation.DefaultServerRequestObservationConvention;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+import org.springframework.http.server.observation.ServerRequestObservationConvention;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Métricas propias además de las que trae Actuator (JVM, Tomcat, http.server.requests):
+ * pool de conexiones hacia la API, estado de los circuit breakers / bulkheads, cola de checkout, caché
+ * del volumen de imágenes y el controlador que atendió cada petición como etiqueta de http.server.requests.
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Conexiones del pool (httpcomponents.httpclient.pool.*): libres, prestadas, peticiones esperando
+     */
+    @Bean
+    public MeterBinder apiConnectionPoolMetrics(ObjectProvider<PoolingHttpClientConnectionManager> connectionManager) {
+        return registry -> connectionManager.ifAvailable(pool ->
+                new PoolingHttpClientConnectionManagerMetricsBinder(pool, "vesta-api").bindTo(registry));
+    }
+
+    /**
+     * Por grupo de backend: llamadas en curso, rechazos y estado del circuito (1 en el estado actual, 0 en el resto)
+     */
+    @Bean
+    public MeterBinder backendGuardMetrics(BackendGuards guards) {
+        return registry -> {
+            for (BackendGuard guard : guards.todos()) {
+                Gauge.builder("vesta.backend.in.flight", guard, BackendGuard::getEnCurso)
+                        .tag("group", guard.getNombre())
+                        .register(registry);
+                FunctionCounter.builder("vesta.backend.rejected", guard, BackendGuard::getRechazosCircuito)
+                        .tag("group", guard.getNombre())
+                        .tag("reason", "circuit-open")
+                        .register(registry);
+                FunctionCounter.builder("vesta.backend.rejected", guard, BackendGuard::getRechazosBulkhead)
+                        .tag("group", guard.getNombre())
+                        .tag("reason", "bulkhead-full")
+                        .register(registry);
+                for (CircuitBreaker.Estado estado : CircuitBreaker.Estado.values()) {
+                    Gauge.builder("vesta.backend.circuit.state", guard, g -> g.getEstado() == estado ? 1 : 0)
+                            .tag("group", guard.getNombre())
+                            .tag("state", estado.name())
+                            .register(registry);
+                }
+            }
+        };
+    }
+
+    /**
+     * Pedidos de checkout esperando en la cola y en envío
+     */
+    @Bean
+    public MeterBinder colaCheckoutMetrics(ColaCheckout colaCheckout) {
+        return registry -> {
+            Gauge.builder("vesta.checkout.queue.size", colaCheckout, ColaCheckout::getPendientes)
+                    .register(registry);
+            Gauge.builder("vesta.checkout.active", colaCheckout, ColaCheckout::getEnCurso)
+                    .register(registry);
+        };
+    }
+
+    /**
+     * Caché en memoria del volumen de imágenes: aciertos, fallos y bytes copiados
+     */
+    @Bean
+    public MeterBinder volumenImagenesMetrics(VolumenImagenes volumen) {
+        return registry -> {
+            FunctionCounter.builder("vesta.imagenes.cache.gets", volumen, VolumenImagenes::getAciertos)
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("vesta.imagenes.cache.gets", volumen, VolumenImagenes::getFallos)
+                    .tag("result", "miss")
+                    .register(registry);
+            Gauge.builder("vesta.imagenes.cache.bytes", volumen, VolumenImagenes::getBytesEnCache)
+                    .register(registry);
+        };
+    }
+
+    /**
+     * Añade la etiqueta controller (clase que atendió la petición) a http.server.requests
+     */
+    @Bean
+    public ServerRequestObservationConvention serverRequestObservationConvention() {
+        return new DefaultServerRequestObservationConvention() {
+            @Override
+            public KeyValues getLowCardinalityKeyValues(ServerRequestObservationContext context) {
+                return super.getLowCardinalityKeyValues(context).and(controller(context));
+            }
+        };
+    }
+
+    private static KeyValue controller(ServerRequestObservationContext context) {
+        Object handler = context.getCarrier().getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+        if (handler instanceof HandlerMethod handlerMethod) {
+            return KeyValue.of("controller", handlerMethod.getBeanType().getSimpleName());
+        }
+        return KeyValue.of("controller", "none");
+    }
+}
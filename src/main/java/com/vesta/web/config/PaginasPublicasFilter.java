@@ -0,0 +1,238 @@
+package com.vesta.web.config;
+
+import com.vesta.web.cache.TtlCache;
+import com.vesta.web.metrics.ApiMetrics;
+import com.vesta.web.session.CookieIdentidad;
+import com.vesta.web.session.SesionUsuario;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.session.web.http.SessionRepositoryFilter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Caché de página completa para visitantes anónimos en las páginas públicas (landing, seguros, FAQ, legales)
+ *
+ * La primera visita anónima a cada ruta e idioma pasa por el controlador y Thymeleaf; el HTML resultante
+ * se guarda junto con su versión gzip y un ETag con el hash del contenido. Las siguientes se sirven desde
+ * memoria sin llegar a DispatcherServlet, con 304 si el navegador ya la tiene. Con usuario (cookie de
+ * identidad o sesión) la petición sigue su camino normal: "/" redirige al dashboard.
+ *
+ * Vive en memoria del proceso, así que cada despliegue empieza vacío; y como el ETag es el hash, el
+ * navegador recibe la página nueva en cuanto cambia. Las páginas cacheadas no pueden depender de
+ * parámetros: la query (utm_*, etc.) no forma parte de la clave.
+ */
+@Component
+// Después de Spring Session (para saber si hay usuario) y de MdcFilter
+@Order(SessionRepositoryFilter.DEFAULT_ORDER + 2)
+public class PaginasPublicasFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaginasPublicasFilter.class);
+
+    // Por debajo de esto la cabecera gzip se come el ahorro
+    private static final int TAMANO_MINIMO_GZIP = 1024;
+
+    private final CookieIdentidad cookieIdentidad;
+    private final boolean habilitado;
+    private final Set<String> rutas;
+    private final Duration ttl;
+    private final TtlCache<String, Pagina> cache;
+
+    public PaginasPublicasFilter(CookieIdentidad cookieIdentidad, ApiMetrics metrics,
+            @Value("${paginas.cache.enabled:true}") boolean habilitado,
+            @Value("${paginas.cache.rutas:/,/seguros,/faq,/privacidad,/cookies,/terminos}") List<String> rutas,
+            @Value("${paginas.cache.ttl:1h}") Duration ttl,
+            @Value("${paginas.cache.max-entries:200}") int maxEntradas) {
+        this.cookieIdentidad = cookieIdentidad;
+        this.habilitado = habilitado;
+        this.rutas = Set.copyOf(rutas);
+        this.ttl = ttl;
+        this.cache = new TtlCache<>("paginas", maxEntradas);
+        metrics.registrar(cache);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String metodo = request.getMethod();
+        return !habilitado
+                || !("GET".equals(metodo) || "HEAD".equals(metodo))
+                || !rutas.contains(ruta(request));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!anonimo(request)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String clave = ruta(request) + "|" + request.getLocale().getLanguage();
+        Pagina pagina = cache.get(clave);
+        if (pagina != null) {
+            servir(request, response, pagina);
+            return;
+        }
+
+        ContentCachingResponseWrapper capturada = new ContentCachingResponseWrapper(response);
+        chain.doFilter(request, capturada);
+
+        pagina = cacheable(request, capturada) ? crear(capturada) : null;
+        if (pagina == null) {
+            capturada.copyBodyToResponse();
+            return;
+        }
+        cache.put(clave, pagina, ttl);
+        logger.debug("Página {} cacheada: {} bytes, {} con gzip", clave, pagina.html.length,
+                pagina.gzip != null ? pagina.gzip.length : pagina.html.length);
+        // La respuesta ya está en el wrapper; se descarta y se envía la versión cacheada (gzip, ETag)
+        capturada.resetBuffer();
+        servir(request, response, pagina);
+    }
+
+    private void servir(HttpServletRequest request, HttpServletResponse response, Pagina pagina) throws IOException {
+        boolean gzip = pagina.gzip != null && aceptaGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        String etag = gzip ? pagina.etagGzip : pagina.etag;
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.VARY, "Accept-Encoding, Accept-Language");
+        // Sin max-age: el navegador revalida siempre, para que tras el login "/" vuelva a redirigir
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+
+        if (coincide(request.getHeader(HttpHeaders.IF_NONE_MATCH), pagina)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] cuerpo = gzip ? pagina.gzip : pagina.html;
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(pagina.tipo);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setContentLength(cuerpo.length);
+        if (!"HEAD".equals(request.getMethod())) {
+            response.getOutputStream().write(cuerpo);
+        }
+    }
+
+    private boolean anonimo(HttpServletRequest request) {
+        if (cookieIdentidad.leer(request) != null) {
+            return false;
+        }
+        return SesionUsuario.de(request.getSession(false)) == null;
+    }
+
+    // Solo un 200 HTML que no haya abierto sesión ni puesto cookies: cualquier otra cosa es de esta petición
+    private boolean cacheable(HttpServletRequest request, ContentCachingResponseWrapper respuesta) {
+        String tipo = respuesta.getContentType();
+        return respuesta.getStatus() == HttpServletResponse.SC_OK
+                && tipo != null && tipo.startsWith("text/html")
+                && !respuesta.containsHeader(HttpHeaders.SET_COOKIE)
+                && !respuesta.containsHeader(HttpHeaders.CONTENT_ENCODING)
+                && request.getSession(false) == null
+                && respuesta.getContentSize() > 0;
+    }
+
+    private static Pagina crear(ContentCachingResponseWrapper respuesta) throws IOException {
+        byte[] html = respuesta.getContentAsByteArray();
+        byte[] gzip = html.length >= TAMANO_MINIMO_GZIP ? gzip(html) : null;
+        if (gzip != null && gzip.length >= html.length) {
+            gzip = null;
+        }
+        return new Pagina(html, gzip, respuesta.getContentType());
+    }
+
+    private static byte[] gzip(byte[] datos) throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(datos.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(salida) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            out.write(datos);
+        }
+        return salida.toByteArray();
+    }
+
+    // Comparación débil (RFC 9110): vale tanto el ETag de la versión gzip como el de la normal
+    private static boolean coincide(String ifNoneMatch, Pagina pagina) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String etag : ifNoneMatch.split(",")) {
+            String candidato = etag.trim();
+            if (candidato.startsWith("W/")) {
+                candidato = candidato.substring(2);
+            }
+            if (candidato.equals("*") || candidato.equals(pagina.etag) || candidato.equals(pagina.etagGzip)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean aceptaGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String codificacion : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+            String[] partes = codificacion.trim().split(";");
+            if (!partes[0].trim().equals("gzip")) {
+                continue;
+            }
+            for (int i = 1; i < partes.length; i++) {
+                String parametro = partes[i].replace(" ", "");
+                if (parametro.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(parametro.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static String ruta(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private static final class Pagina {
+        private final byte[] html;
+        private final byte[] gzip;
+        private final String tipo;
+        private final String etag;
+        private final String etagGzip;
+
+        Pagina(byte[] html, byte[] gzip, String tipo) {
+            this.html = html;
+            this.gzip = gzip;
+            this.tipo = tipo;
+            // Fuerte y distinto por codificación: son representaciones diferentes del mismo recurso
+            String hash = DigestUtils.md5DigestAsHex(html);
+            this.etag = "\"" + hash + "\"";
+            this.etagGzip = "\"" + hash + "-gz\"";
+        }
+    }
+}
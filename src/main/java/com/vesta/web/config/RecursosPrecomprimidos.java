@@ -0,0 +1,136 @@
+package com.vesta.web.config;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Copia los CSS y JS de classpath:/static a un directorio de trabajo junto con su versión .gz,
+ * comprimida una sola vez al arrancar con el nivel máximo. Cada arranque vacía antes las carpetas.
+ *
+ * WebConfig sirve /css y /js desde ese directorio con EncodedResourceResolver: cada petición
+ * envía el .gz ya hecho en lugar de comprimir con Tomcat. Un .br presente en classpath (generado
+ * fuera) se copia igual y tiene preferencia. En desarrollo se desactiva para ver los cambios al momento.
+ */
+@Component
+public class RecursosPrecomprimidos {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecursosPrecomprimidos.class);
+
+    static final List<String> CARPETAS = List.of("css", "js");
+    private static final List<String> COMPRIMIBLES = List.of(".css", ".js", ".svg", ".json", ".map");
+    // Por debajo de esto la cabecera gzip se come el ahorro
+    private static final int TAMANO_MINIMO = 1024;
+
+    private final Path directorio;
+    private boolean habilitado;
+
+    public RecursosPrecomprimidos(@Value("${assets.precompress.enabled:true}") boolean habilitado,
+            @Value("${assets.precompress.dir:${java.io.tmpdir}/vesta-assets}") String directorio) {
+        this.habilitado = habilitado;
+        this.directorio = Paths.get(directorio).toAbsolutePath();
+    }
+
+    @PostConstruct
+    void preparar() {
+        if (!habilitado) {
+            return;
+        }
+        try {
+            long original = 0;
+            long comprimido = 0;
+            int ficheros = 0;
+            PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+            for (String carpeta : CARPETAS) {
+                // Lo de un arranque anterior fuera: un .gz viejo de un fichero que ya no se reescribe
+                // (renombrado, o que ahora no se comprime) se serviría en lugar del nuevo
+                FileSystemUtils.deleteRecursively(directorio.resolve(carpeta));
+                for (Resource recurso : resolver.getResources("classpath:/static/" + carpeta + "/**/*")) {
+                    String ruta = rutaRelativa(recurso);
+                    if (ruta == null) {
+                        continue;
+                    }
+                    Path destino = directorio.resolve(ruta);
+                    Files.createDirectories(destino.getParent());
+                    try (InputStream in = recurso.getInputStream()) {
+                        Files.copy(in, destino, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    ficheros++;
+                    if (comprimible(ruta, Files.size(destino))) {
+                        original += Files.size(destino);
+                        comprimido += gzip(destino);
+                    }
+                }
+            }
+            logger.info("Recursos estáticos precomprimidos en {}: {} ficheros, {} KB -> {} KB (gzip)",
+                    directorio, ficheros, original / 1024, comprimido / 1024);
+        } catch (IOException e) {
+            // Sin directorio de trabajo se sirve desde classpath, comprimiendo en cada petición
+            logger.warn("No se pudieron precomprimir los recursos estáticos: {}", e.getMessage());
+            habilitado = false;
+        }
+    }
+
+    /**
+     * Ubicaciones para el resource handler de la carpeta: el directorio precomprimido primero
+     * y classpath como respaldo
+     */
+    public String[] ubicaciones(String carpeta) {
+        String classpath = "classpath:/static/" + carpeta + "/";
+        if (!habilitado) {
+            return new String[] {classpath};
+        }
+        String precomprimido = directorio.resolve(carpeta).toUri().toString();
+        return new String[] {precomprimido.endsWith("/") ? precomprimido : precomprimido + "/", classpath};
+    }
+
+    // css/styles.css, o null para directorios
+    private static String rutaRelativa(Resource recurso) throws IOException {
+        String nombre = recurso.getFilename();
+        if (nombre == null || nombre.isEmpty() || !recurso.isReadable()) {
+            return null;
+        }
+        String url = recurso.getURL().toString();
+        int inicio = url.lastIndexOf("/static/");
+        return inicio >= 0 ? url.substring(inicio + "/static/".length()) : null;
+    }
+
+    private static boolean comprimible(String ruta, long tamano) {
+        String nombre = ruta.toLowerCase(Locale.ROOT);
+        return tamano >= TAMANO_MINIMO && COMPRIMIBLES.stream().anyMatch(nombre::endsWith);
+    }
+
+    // Escribe fichero.gz si ahorra algo; devuelve el tamaño que se servirá
+    private static long gzip(Path fichero) throws IOException {
+        Path gz = fichero.resolveSibling(fichero.getFileName() + ".gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gz)) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            Files.copy(fichero, out);
+        }
+        if (Files.size(gz) >= Files.size(fichero)) {
+            Files.delete(gz);
+            return Files.size(fichero);
+        }
+        return Files.size(gz);
+    }
+}
@@ -1,22 +1,45 @@
 package com.vesta.web.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.observation.ObservationRegistry;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.BufferingClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executors;
 
 /**
  * Configuración de RestTemplate para comunicación con la API
+ *
+ * El motor HTTP se elige con {@code api.http.engine}:
+ * - apache (por defecto): pool de conexiones acotado por ruta, keep-alive y desalojo de conexiones ociosas
+ * - jdk: java.net.http.HttpClient, con HTTP/2 si el backend lo soporta
+ * - simple: HttpURLConnection sin pool (comportamiento anterior)
  */
 @Configuration
 public class RestTemplateConfig {
@@ -29,66 +52,149 @@ public class RestTemplateConfig {
     @Value("${api.read.timeout:10000}")
     private int readTimeout;
 
-    @Bean
-    public RestTemplate restTemplate() {
-        logger.info("Configurando RestTemplate MANUAL con timeout conn: {}ms, read: {}ms", connectionTimeout,
-                readTimeout);
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
 
-        // 1. Factory Base (Simple)
-        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
-        requestFactory.setConnectTimeout(connectionTimeout);
-        requestFactory.setReadTimeout(readTimeout);
-        requestFactory.setOutputStreaming(false); // Importante para buffering en algunos casos
+    @Value("${api.http.engine:apache}")
+    private String engine;
+
+    @Value("${api.logging.max-body-bytes:2048}")
+    private int maxBodyLogBytes;
+
+    @Value("${api.pool.max-total:100}")
+    private int poolMaxTotal;
+
+    @Value("${api.pool.max-per-route:50}")
+    private int poolMaxPerRoute;
 
-        // 2. Decorador Buffering (Clave para leer body mÃºltiples veces)
-        BufferingClientHttpRequestFactory bufferingFactory = new BufferingClientHttpRequestFactory(requestFactory);
+    @Value("${api.pool.acquire-timeout:2000}")
+    private int poolAcquireTimeout;
+
+    @Value("${api.pool.keep-alive:30000}")
+    private long poolKeepAlive;
+
+    @Value("${api.pool.idle-eviction:60000}")
+    private long poolIdleEviction;
+
+    @Value("${api.pool.validate-after-inactivity:2000}")
+    private long poolValidateAfterInactivity;
+
+    /**
+     * Pool de conexiones compartido por todas las llamadas de ApiService (solo motor apache)
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "api.http.engine", havingValue = "apache", matchIfMissing = true)
+    public PoolingHttpClientConnectionManager apiConnectionManager() {
+        logger.info("Configurando pool HTTP: maxTotal={}, maxPerRoute={}, keepAlive={}ms, idleEviction={}ms",
+                poolMaxTotal, poolMaxPerRoute, poolKeepAlive, poolIdleEviction);
+
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(connectionTimeout))
+                .setSocketTimeout(Timeout.ofMilliseconds(readTimeout))
+                .setValidateAfterInactivity(TimeValue.ofMilliseconds(poolValidateAfterInactivity))
+                .build();
+
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(poolMaxTotal)
+                .setMaxConnPerRoute(poolMaxPerRoute)
+                .setPoolConcurrencyPolicy(PoolConcurrencyPolicy.STRICT)
+                .setConnPoolPolicy(PoolReusePolicy.LIFO) // Reutilizar primero las conexiones más calientes
+                .setDefaultConnectionConfig(connectionConfig)
+                .build();
+    }
+
+    @Bean
+    public ClientHttpRequestFactory apiRequestFactory(
+            ObjectProvider<PoolingHttpClientConnectionManager> connectionManager) {
+        logger.info("Motor HTTP para la API: {} (timeout conn: {}ms, read: {}ms)", engine, connectionTimeout,
+                readTimeout);
 
-        // 3. Instancia directa (sin Builder para evitar magias)
-        RestTemplate restTemplate = new RestTemplate(bufferingFactory);
+        switch (engine) {
+            case "jdk":
+                return jdkRequestFactory();
+            case "simple":
+                return simpleRequestFactory();
+            case "apache":
+                return apacheRequestFactory(connectionManager.getObject());
+            default:
+                throw new IllegalStateException("Motor HTTP desconocido en api.http.engine: " + engine);
+        }
+    }
 
-        // 4. Interceptor con Logging del Body DE RESPUESTA
+    @Bean
+    public RestTemplate restTemplate(ClientHttpRequestFactory apiRequestFactory, ObjectMapper objectMapper,
+                                     ObservationRegistry observationRegistry) {
+        // 1. Instancia directa (sin Builder para evitar magias). Sin BufferingClientHttpRequestFactory:
+        //    el interceptor de logging ya no necesita releer el body
+        RestTemplate restTemplate = new RestTemplate(apiRequestFactory);
+
+        // Reutilizar el ObjectMapper de Spring (ya configurado y con sus cachés de serializadores calientes)
+        // en lugar del que crea por su cuenta cada conversor JSON de RestTemplate
+        restTemplate.getMessageConverters().stream()
+                .filter(MappingJackson2HttpMessageConverter.class::isInstance)
+                .map(MappingJackson2HttpMessageConverter.class::cast)
+                .forEach(converter -> converter.setObjectMapper(objectMapper));
+
+        // Cada llamada abre un span http.client.requests (hijo del span de la operación de ApiService)
+        // y propaga la cabecera W3C traceparent al backend
+        restTemplate.setObservationRegistry(observationRegistry);
+
+        // 2. Interceptor con Logging del Body DE RESPUESTA (solo un prefijo acotado)
         List<ClientHttpRequestInterceptor> interceptors = new ArrayList<>();
-        interceptors.add(new LoggingInterceptor());
+        interceptors.add(new LoggingInterceptor(maxBodyLogBytes));
         restTemplate.setInterceptors(interceptors);
 
         return restTemplate;
     }
 
-    /**
-     * Interceptor para logging de requests y responses
-     */
-    private static class LoggingInterceptor implements ClientHttpRequestInterceptor {
-
-        private static final Logger log = LoggerFactory.getLogger(LoggingInterceptor.class);
-
-        @Override
-        public org.springframework.http.client.ClientHttpResponse intercept(
-                org.springframework.http.HttpRequest request,
-                byte[] body,
-                org.springframework.http.client.ClientHttpRequestExecution execution) throws java.io.IOException {
-
-            log.debug(">>> Request: {} {}", request.getMethod(), request.getURI());
-
-            // Ejecutar request
-            org.springframework.http.client.ClientHttpResponse response = execution.execute(request, body);
-
-            // Leer respuesta (seguro porque usamos BufferingClientHttpRequestFactory)
-            StringBuilder inputStringBuilder = new StringBuilder();
-            try (java.io.BufferedReader bufferedReader = new java.io.BufferedReader(
-                    new java.io.InputStreamReader(response.getBody(), java.nio.charset.StandardCharsets.UTF_8))) {
-                String line;
-                while ((line = bufferedReader.readLine()) != null) {
-                    inputStringBuilder.append(line);
-                }
-            } catch (Exception e) {
-                log.error("Error leyendo body en interceptor: {}", e.getMessage());
-            }
-
-            String responseBody = inputStringBuilder.toString();
-            log.debug("<<< Response: {} {} - Status: {} - Body: {}",
-                    request.getMethod(), request.getURI(), response.getStatusCode(), responseBody);
-
-            return response;
+    private ClientHttpRequestFactory apacheRequestFactory(PoolingHttpClientConnectionManager connectionManager) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolAcquireTimeout))
+                .setResponseTimeout(Timeout.ofMilliseconds(readTimeout))
+                // Se usa cuando el backend no envía cabecera Keep-Alive
+                .setConnectionKeepAlive(TimeValue.ofMilliseconds(poolKeepAlive))
+                .build();
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(poolIdleEviction))
+                .build();
+
+        return new HttpComponentsClientHttpRequestFactory(httpClient);
+    }
+
+    private ClientHttpRequestFactory jdkRequestFactory() {
+        // El HttpClient del JDK gestiona su propio pool; sus límites solo se pueden fijar
+        // mediante propiedades de sistema antes de crear el primer cliente
+        setIfAbsent("jdk.httpclient.connectionPoolSize", String.valueOf(poolMaxTotal));
+        setIfAbsent("jdk.httpclient.keepalive.timeout", String.valueOf(Math.max(1, poolKeepAlive / 1000)));
+
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2) // Negocia HTTP/2 y cae a HTTP/1.1 si el backend no lo soporta
+                .connectTimeout(Duration.ofMillis(connectionTimeout));
+        if (virtualThreads) {
+            builder.executor(Executors.newVirtualThreadPerTaskExecutor());
+        }
+        HttpClient httpClient = builder.build();
+
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(Duration.ofMillis(readTimeout));
+        return requestFactory;
+    }
+
+    private ClientHttpRequestFactory simpleRequestFactory() {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(connectionTimeout);
+        requestFactory.setReadTimeout(readTimeout);
+        requestFactory.setOutputStreaming(false); // Importante para buffering en algunos casos
+        return requestFactory;
+    }
+
+    private static void setIfAbsent(String property, String value) {
+        if (System.getProperty(property) == null) {
+            System.setProperty(property, value);
         }
     }
 }
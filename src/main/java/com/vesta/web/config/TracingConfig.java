@@ -0,0 +1,30 @@
+package com.vesta.web.config;
+
+import io.opentelemetry.exporter.logging.otlp.OtlpJsonLoggingSpanExporter;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Exportación de trazas sin depender de un proveedor
+ *
+ * Con {@code tracing.file.enabled=true} cada span se escribe en formato OTLP JSON (una línea por lote)
+ * en el fichero del appender TRACES de logback-spring.xml, para montar desgloses de latencia en local.
+ * Para enviarlas a un colector OTLP basta con definir {@code management.otlp.tracing.endpoint};
+ * ambos exportadores pueden estar activos a la vez.
+ */
+@Configuration
+public class TracingConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(TracingConfig.class);
+
+    @Bean
+    @ConditionalOnProperty(name = "tracing.file.enabled", havingValue = "true")
+    public SpanExporter fileSpanExporter() {
+        logger.info("Exportando trazas a fichero (OTLP JSON)");
+        return OtlpJsonLoggingSpanExporter.create();
+    }
+}
@@ -1,22 +1,90 @@
 package com.vesta.web.config;
 
+import com.vesta.web.imagenes.VarianteImagenResolver;
+import com.vesta.web.imagenes.VariantesImagen;
+import com.vesta.web.session.CookieIdentidad;
+import com.vesta.web.session.IdentidadArgumentResolver;
+import com.vesta.web.session.RenovadorToken;
+import com.vesta.web.session.SesionUsuarioArgumentResolver;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.ResourceUrlEncodingFilter;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
+
+import java.time.Duration;
+import java.util.List;
 
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+        @Autowired
+        private CookieIdentidad cookieIdentidad;
+
+        @Autowired
+        private RenovadorToken renovadorToken;
+
+        @Autowired
+        private RecursosPrecomprimidos recursosPrecomprimidos;
+
+        @Autowired
+        private VariantesImagen variantesImagen;
+
+        // Caché de /css y /js: las URLs llevan el hash del contenido, así que pueden ser inmutables
+        @Value("${assets.cache.max-age:365d}")
+        private Duration maxAgeVersionados;
+
+        // false en desarrollo: la cadena vuelve a calcular el hash si cambia el fichero
+        @Value("${assets.chain.cache:true}")
+        private boolean cacheCadena;
+
         @Override
         public void addResourceHandlers(ResourceHandlerRegistry registry) {
                 // Configurar el manejo de recursos estáticos
+                // Imágenes: /images/x.png?w=480 sirve la variante de ese ancho (generada la primera vez, en disco).
+                // El volumen va primero (se pueden cambiar imágenes sin recompilar); los originales los sirve
+                // antes VolumenImagenesFilter si el volumen está montado
                 registry.addResourceHandler("/images/**")
-                                .addResourceLocations("classpath:/static/images/", "file:/app/images/");
+                                .addResourceLocations("file:/app/images/", "classpath:/static/images/")
+                                .resourceChain(false)
+                                .addResolver(new VarianteImagenResolver(variantesImagen));
 
-                registry.addResourceHandler("/css/**")
-                                .addResourceLocations("classpath:/static/css/");
+                // CSS y JS: /css/styles-<md5>.css (th:href="@{/css/styles.css}" se reescribe solo) y .gz precomprimido
+                for (String carpeta : RecursosPrecomprimidos.CARPETAS) {
+                        registry.addResourceHandler("/" + carpeta + "/**")
+                                        .addResourceLocations(recursosPrecomprimidos.ubicaciones(carpeta))
+                                        .setCacheControl(cacheVersionados())
+                                        .resourceChain(cacheCadena)
+                                        .addResolver(new EncodedResourceResolver())
+                                        .addResolver(new VersionResourceResolver().addContentVersionStrategy("/**"));
+                }
+        }
+
+        @Override
+        public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+                // Parámetros SesionUsuario (sesión completa) e Identidad (cookie, sin sesión) en los controladores
+                resolvers.add(new SesionUsuarioArgumentResolver(cookieIdentidad, renovadorToken));
+                resolvers.add(new IdentidadArgumentResolver(cookieIdentidad));
+        }
+
+        /**
+         * Reescribe las URLs de @{...} en Thymeleaf a su versión con hash
+         */
+        @Bean
+        public ResourceUrlEncodingFilter resourceUrlEncodingFilter() {
+                return new ResourceUrlEncodingFilter();
+        }
 
-                registry.addResourceHandler("/js/**")
-                                .addResourceLocations("classpath:/static/js/");
+        private CacheControl cacheVersionados() {
+                if (maxAgeVersionados.isZero()) {
+                        return CacheControl.noCache();
+                }
+                return CacheControl.maxAge(maxAgeVersionados).cachePublic().immutable();
         }
 }
@@ -1,39 +1,122 @@
 package com.vesta.web.controller;
 
 import com.vesta.web.service.ApiService;
-import jakarta.servlet.http.HttpSession;
+import com.vesta.web.session.SesionUsuario;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Controller
 @RequestMapping("/admin")
 public class AdminController {
+    private static final Logger logger = LoggerFactory.getLogger(AdminController.class);
 
     @Autowired
     private ApiService apiService;
 
-    @GetMapping("/dashboard")
-    public String dashboard(HttpSession session, Model model) {
-        String token = (String) session.getAttribute("token");
-        String rol = (String) session.getAttribute("rol");
+    // Plazo común para las tres consultas del dashboard
+    @Value("${admin.dashboard.timeout:3000}")
+    private long dashboardTimeout;
 
+    @GetMapping("/dashboard")
+    public String dashboard(SesionUsuario usuario, Model model) {
         // Seguridad: Solo ADMIN puede entrar
-        if (token == null || !"ADMIN".equals(rol)) {
+        if (usuario == null || !usuario.isAdmin()) {
             return "redirect:/";
         }
 
-        // Obtener datos reales de la API
-        model.addAttribute("ordenes", apiService.obtenerTodasLasOrdenes(token));
-        model.addAttribute("solicitudes", apiService.obtenerSolicitudesRGPD(token));
-        
-        // === NUEVO: Cargar lista de siniestros ===
-        model.addAttribute("siniestros", apiService.obtenerSiniestros(token));
-        
-        model.addAttribute("nombreUsuario", session.getAttribute("usuarioNombre"));
+        String token = usuario.getToken();
+
+        // Obtener datos reales de la API (las tres consultas en paralelo)
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(dashboardTimeout);
+        CompletableFuture<List<Map<String, Object>>> ordenes = apiService.obtenerTodasLasOrdenesAsync(token);
+        CompletableFuture<List<Map<String, Object>>> solicitudes = apiService.obtenerSolicitudesRGPDAsync(token);
+        CompletableFuture<List<Map<String, Object>>> siniestros = apiService.obtenerSiniestrosAsync(token);
+
+        // Cada pestaña se degrada por separado si su consulta no llega a tiempo
+        model.addAttribute("ordenes", esperar(ordenes, deadline, "ordenes", model));
+        model.addAttribute("solicitudes", esperar(solicitudes, deadline, "solicitudes", model));
+        model.addAttribute("siniestros", esperar(siniestros, deadline, "siniestros", model));
+
+        model.addAttribute("nombreUsuario", usuario.getNombre());
 
         return "admin/dashboard";
     }
-}
\ No newline at end of file
+
+    /**
+     * Cambio de estado de un siniestro desde el modal del dashboard.
+     * Pasa por ApiService para que el listado cacheado se invalide.
+     */
+    @PutMapping("/siniestros/{id}/estado")
+    @ResponseBody
+    public ResponseEntity<?> actualizarSiniestro(@PathVariable Long id, @RequestBody Map<String, String> request,
+            SesionUsuario usuario) {
+        if (usuario == null || !usuario.isAdmin()) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", "Acceso denegado o sesión expirada.");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(error);
+        }
+
+        String estado = request.get("estado");
+        if (estado == null || estado.trim().isEmpty()) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", "El estado es obligatorio");
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        try {
+            apiService.actualizarEstadoSiniestro(usuario.getToken(), id, estado);
+
+            Map<String, String> response = new HashMap<>();
+            response.put("message", "Estado actualizado correctamente.");
+            return ResponseEntity.ok(response);
+
+        } catch (RuntimeException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    /**
+     * Espera el resultado hasta el plazo común. Si no llega, marca la pestaña como
+     * no disponible ({@code <pestana>NoDisponible}) y devuelve una lista vacía.
+     */
+    private List<Map<String, Object>> esperar(CompletableFuture<List<Map<String, Object>>> consulta,
+            long deadline, String pestana, Model model) {
+        try {
+            long restante = Math.max(0, deadline - System.nanoTime());
+            List<Map<String, Object>> resultado = consulta.get(restante, TimeUnit.NANOSECONDS);
+            return resultado != null ? resultado : List.of();
+        } catch (TimeoutException e) {
+            // Sin cancel: en un CompletableFuture no interrumpe la llamada. Sigue en segundo plano hasta
+            // api.read.timeout y su resultado se queda en la caché de listas para la siguiente carga
+            logger.warn("Tiempo agotado cargando {} del dashboard ({}ms)", pestana, dashboardTimeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("Error cargando {} del dashboard: {}", pestana, e.getMessage());
+        }
+        model.addAttribute(pestana + "NoDisponible", true);
+        return List.of();
+    }
+}
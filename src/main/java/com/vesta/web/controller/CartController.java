@@ -1,18 +1,26 @@
 package com.vesta.web.controller;
 
 import com.vesta.web.dto.CartItem;
-import com.vesta.web.service.ApiService;
+import com.vesta.web.service.ColaCheckout;
+import com.vesta.web.session.ActualizadorSesion;
+import com.vesta.web.session.Carrito;
+import com.vesta.web.session.SesionUsuario;
 import jakarta.servlet.http.HttpSession;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
 
 @Controller
 @RequestMapping("/cliente/carrito")
@@ -20,90 +28,156 @@ import java.util.List;
 public class CartController {
     private static final Logger logger = LoggerFactory.getLogger(CartController.class);
 
-    private final ApiService apiService;
+    // Claves de idempotencia aceptadas del formulario (UUID o similar)
+    private static final Pattern CLAVE_VALIDA = Pattern.compile("[A-Za-z0-9-]{8,64}");
+
+    private final ColaCheckout colaCheckout;
+    private final ActualizadorSesion actualizadorSesion;
 
     @GetMapping
-    public String verCarrito(HttpSession session, Model model) {
+    public String verCarrito(SesionUsuario usuario, HttpSession session, Model model) {
         // Verificar sesión
-        if (session.getAttribute("token") == null)
+        if (usuario == null)
             return "redirect:/";
 
-        List<CartItem> carrito = obtenerCarrito(session);
-        BigDecimal total = calcularTotal(carrito);
+        Carrito carrito = usuario.getCarrito();
+        // Pedidos fallidos cuyos items no volvieron desde el dashboard (sin sondeo, o sesión cerrada entonces)
+        List<ColaCheckout.Pedido> fallidos = colaCheckout.porDevolver(usuario.getUsuarioId());
+        if (!fallidos.isEmpty()) {
+            Carrito actual = devolverAlCarrito(fallidos, session);
+            if (actual != null) {
+                carrito = actual;
+            }
+        }
 
-        model.addAttribute("carrito", carrito);
-        model.addAttribute("total", total);
-        model.addAttribute("nombreUsuario", session.getAttribute("usuarioNombre"));
+        model.addAttribute("carrito", carrito.getItems());
+        model.addAttribute("total", carrito.getTotal());
+        model.addAttribute("nombreUsuario", usuario.getNombre());
+        // Una clave por carrito pintado: si el formulario se envía dos veces, el pedido solo se encola una
+        model.addAttribute("claveCheckout", UUID.randomUUID().toString());
 
         return "cliente/carrito";
     }
 
     @PostMapping("/agregar")
     @ResponseBody // Respuesta JSON para el fetch de JS
-    public String agregarItem(@RequestBody CartItem item, HttpSession session) {
-        List<CartItem> carrito = obtenerCarrito(session);
-
-        boolean existe = false;
-        for (CartItem i : carrito) {
-            if (i.getSeguroId().equals(item.getSeguroId())) {
-                i.setCantidad(i.getCantidad() + 1);
-                existe = true;
-                break;
-            }
-        }
-
-        if (!existe) {
-            item.setCantidad(1);
-            carrito.add(item);
-        }
-
-        return "OK";
+    public String agregarItem(@RequestBody CartItem item, SesionUsuario usuario, HttpSession session) {
+        if (usuario == null)
+            return "LOGIN_REQUIRED";
+        if (item.getSeguroId() == null)
+            return "INVALID_ITEM";
+
+        // Sobre la versión actual del carrito: dos pestañas añadiendo a la vez no se pisan
+        Integer cantidad = actualizadorSesion.modificar(session, u -> u.getCarrito().agregar(item));
+        return cantidad != null ? "OK" : "LOGIN_REQUIRED";
     }
 
-    @GetMapping("/eliminar/{index}")
-    public String eliminarItem(@PathVariable int index, HttpSession session) {
-        List<CartItem> carrito = obtenerCarrito(session);
-        if (index >= 0 && index < carrito.size()) {
-            carrito.remove(index);
-        }
+    // Por seguroId y no por posición: la posición cambia si otra pestaña modifica el carrito
+    @GetMapping("/eliminar/{seguroId}")
+    public String eliminarItem(@PathVariable String seguroId, SesionUsuario usuario, HttpSession session) {
+        if (usuario == null)
+            return "redirect:/";
+
+        actualizadorSesion.modificar(session, u -> u.getCarrito().eliminar(seguroId));
         return "redirect:/cliente/carrito";
     }
 
+    /**
+     * Encola el pedido y vacía el carrito sin esperar al backend; el dashboard consulta
+     * el resultado en /cliente/carrito/checkout/{clave}
+     */
     @PostMapping("/checkout")
-    public String procesarCheckout(HttpSession session) {
-        Long usuarioId = (Long) session.getAttribute("usuarioId");
-        List<CartItem> carrito = obtenerCarrito(session);
+    public String procesarCheckout(@RequestParam(value = "idempotencyKey", required = false) String clave,
+            SesionUsuario usuario, HttpSession session) {
+        if (usuario == null)
+            return "redirect:/";
 
-        if (carrito.isEmpty()) {
-            return "redirect:/cliente/carrito?error=empty";
-        }
+        String claveCheckout = clave != null && CLAVE_VALIDA.matcher(clave).matches()
+                ? clave
+                : UUID.randomUUID().toString();
 
         try {
-            apiService.realizarCheckout(usuarioId, carrito);
-
-            // Vaciar carrito tras compra exitosa
-            session.setAttribute("carrito", new ArrayList<>());
-            return "redirect:/cliente/dashboard?success=checkout";
+            // Bajo el bloqueo de la sesión: se encola exactamente lo que se vacía
+            Boolean encolado = actualizadorSesion.modificar(session, u -> {
+                if (colaCheckout.buscar(u.getUsuarioId(), claveCheckout) != null) {
+                    return true; // Doble envío: el pedido ya está en marcha
+                }
+                Carrito carrito = u.getCarrito();
+                if (carrito.isVacio()) {
+                    return false;
+                }
+                colaCheckout.encolar(u.getUsuarioId(), claveCheckout, carrito.getItems());
+                carrito.vaciar();
+                return true;
+            });
+
+            if (encolado == null)
+                return "redirect:/";
+            if (!encolado)
+                return "redirect:/cliente/carrito?error=empty";
+            return "redirect:/cliente/dashboard?checkout=" + claveCheckout;
 
         } catch (Exception e) {
-            logger.error("Error procesando checkout", e);
-            return "redirect:/cliente/carrito?error=api_fail";
+            logger.error("Error encolando checkout", e);
+            return "redirect:/cliente/carrito?error=busy";
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private List<CartItem> obtenerCarrito(HttpSession session) {
-        List<CartItem> carrito = (List<CartItem>) session.getAttribute("carrito");
-        if (carrito == null) {
-            carrito = new ArrayList<>();
-            session.setAttribute("carrito", carrito);
+    /**
+     * Estado del pedido para el sondeo del dashboard. Si falló definitivamente, sus items
+     * vuelven al carrito (una sola vez) para poder reintentar la compra; si no se pudo, vuelven
+     * la próxima vez que se abra el carrito.
+     */
+    @GetMapping("/checkout/{clave}")
+    @ResponseBody
+    public ResponseEntity<?> estadoCheckout(@PathVariable String clave, SesionUsuario usuario, HttpSession session) {
+        if (usuario == null)
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "Sesión no iniciada"));
+
+        ColaCheckout.Pedido pedido = colaCheckout.buscar(usuario.getUsuarioId(), clave);
+        if (pedido == null)
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", "Pedido no encontrado"));
+
+        if (pedido.isPorDevolver()) {
+            devolverAlCarrito(List.of(pedido), session);
         }
-        return carrito;
+
+        Map<String, Object> estado = new LinkedHashMap<>();
+        estado.put("estado", pedido.getEstado());
+        estado.put("terminado", pedido.getEstado().isTerminado());
+        estado.put("intentos", pedido.getIntentos());
+        estado.put("itemsDevueltos", pedido.isDevuelto());
+        estado.put("message", pedido.getMensaje());
+        return ResponseEntity.ok(estado);
     }
 
-    private BigDecimal calcularTotal(List<CartItem> carrito) {
-        return carrito.stream()
-                .map(CartItem::getSubtotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    /**
+     * Añade al carrito los items de los pedidos fallidos. Un pedido solo queda como devuelto si la
+     * sesión se llegó a guardar con sus items; si no (logout, error), se intentará en la siguiente visita.
+     *
+     * @return el carrito ya actualizado, o null si no se pudo guardar
+     */
+    private Carrito devolverAlCarrito(List<ColaCheckout.Pedido> fallidos, HttpSession session) {
+        List<ColaCheckout.Pedido> reservados = new ArrayList<>();
+        try {
+            Carrito carrito = actualizadorSesion.modificar(session, u -> {
+                for (ColaCheckout.Pedido pedido : fallidos) {
+                    List<CartItem> items = pedido.reservarDevolucion();
+                    if (!items.isEmpty()) {
+                        reservados.add(pedido);
+                        items.forEach(item -> u.getCarrito().agregar(item, item.getCantidad()));
+                    }
+                }
+                return u.getCarrito();
+            });
+            if (carrito == null) {
+                reservados.forEach(ColaCheckout.Pedido::cancelarDevolucion);
+            }
+            return carrito;
+        } catch (RuntimeException e) {
+            reservados.forEach(ColaCheckout.Pedido::cancelarDevolucion);
+            logger.error("No se pudieron devolver al carrito los items de {} pedido(s)", reservados.size(), e);
+            return null;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,90 @@
+package com.vesta.web.controller;
+
+import com.vesta.web.resilience.BackendNoDisponibleException;
+import com.vesta.web.service.CatalogoService;
+import com.vesta.web.session.SesionUsuario;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Catálogo de productos servido por la web (mismo origen) en lugar de llamar a la API desde el navegador.
+ * Las respuestas llevan ETag: si el cliente envía If-None-Match con la versión vigente recibe un 304.
+ */
+@RestController
+@RequestMapping("/cliente/api/productos")
+@RequiredArgsConstructor
+public class CatalogoController {
+    private static final Logger logger = LoggerFactory.getLogger(CatalogoController.class);
+
+    private final CatalogoService catalogoService;
+
+    @GetMapping
+    public ResponseEntity<?> productos(SesionUsuario usuario) {
+        if (usuario == null) {
+            return error(HttpStatus.UNAUTHORIZED, "Acceso denegado o sesión expirada.");
+        }
+
+        try {
+            CatalogoService.Catalogo catalogo = catalogoService.obtenerCatalogo(usuario);
+            return json(catalogo.getJson(), catalogo.getEtag());
+        } catch (RuntimeException e) {
+            logger.error("Error sirviendo el catálogo: {}", e.getMessage());
+            return error(estadoError(e), e.getMessage());
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<?> producto(@PathVariable Long id, SesionUsuario usuario) {
+        if (usuario == null) {
+            return error(HttpStatus.UNAUTHORIZED, "Acceso denegado o sesión expirada.");
+        }
+
+        try {
+            CatalogoService.Producto producto = catalogoService.obtenerProducto(usuario, id);
+            return json(producto.getJson(), producto.getEtag());
+        } catch (RuntimeException e) {
+            logger.error("Error sirviendo el producto {}: {}", id, e.getMessage());
+            return error(estadoError(e), e.getMessage());
+        }
+    }
+
+    // 404 solo si la API dice que no existe; circuito abierto o bulkhead lleno 503; el resto es fallo del backend
+    private static HttpStatus estadoError(RuntimeException e) {
+        Throwable causa = e.getCause() != null ? e.getCause() : e;
+        if (causa instanceof HttpClientErrorException.NotFound) {
+            return HttpStatus.NOT_FOUND;
+        }
+        if (causa instanceof BackendNoDisponibleException || e instanceof BackendNoDisponibleException) {
+            return HttpStatus.SERVICE_UNAVAILABLE;
+        }
+        return HttpStatus.BAD_GATEWAY;
+    }
+
+    // Spring responde 304 por sí solo cuando el If-None-Match coincide con el ETag de la respuesta
+    private ResponseEntity<byte[]> json(byte[] body, String etag) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(body);
+    }
+
+    private ResponseEntity<Map<String, String>> error(HttpStatus status, String message) {
+        Map<String, String> error = new HashMap<>();
+        error.put("message", message);
+        return ResponseEntity.status(status).body(error);
+    }
+}
@@ -1,45 +1,54 @@
 package com.vesta.web.controller;
 
-import jakarta.servlet.http.HttpSession;
+import com.vesta.web.service.CatalogoFragmentos;
+import com.vesta.web.service.CatalogoService;
+import com.vesta.web.session.SesionUsuario;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 
+import java.util.Map;
+
 @Controller
 @RequestMapping("/cliente")
 public class ClienteController {
+    private static final Logger logger = LoggerFactory.getLogger(ClienteController.class);
 
-    @GetMapping("/dashboard")
-    public String dashboard(HttpSession session, Model model) {
-        String token = (String) session.getAttribute("token");
-        String rol = (String) session.getAttribute("rol");
+    @Autowired
+    private CatalogoService catalogoService;
+
+    @Autowired
+    private CatalogoFragmentos catalogoFragmentos;
 
-        if (token == null) {
+    @GetMapping("/dashboard")
+    public String dashboard(SesionUsuario usuario, Model model) {
+        if (usuario == null) {
             return "redirect:/";
         }
 
-        if ("ADMIN".equals(rol)) {
+        if (usuario.isAdmin()) {
             return "redirect:/admin/dashboard";
         }
 
-        String nombre = (String) session.getAttribute("usuarioNombre");
+        String nombre = usuario.getNombre();
         model.addAttribute("nombreUsuario", nombre != null ? nombre : "Cliente");
 
         return "cliente/dashboard";
     }
 
     @GetMapping("/configuracion")
-    public String configuracion(HttpSession session, Model model) {
-        String token = (String) session.getAttribute("token");
-
-        if (token == null) {
+    public String configuracion(SesionUsuario usuario, Model model) {
+        if (usuario == null) {
             return "redirect:/login-page";
         }
 
-        model.addAttribute("nombreUsuario", session.getAttribute("usuarioNombre"));
-        model.addAttribute("usuarioId", session.getAttribute("usuarioId"));
+        model.addAttribute("nombreUsuario", usuario.getNombre());
+        model.addAttribute("usuarioId", usuario.getUsuarioId());
 
         return "cliente/configuracion";
     }
@@ -47,51 +56,75 @@ public class ClienteController {
     // === MARKETPLACE ===
 
     @GetMapping("/marketplace")
-    public String marketplace(HttpSession session, Model model) {
-        String token = (String) session.getAttribute("token");
-
-        if (token == null) {
+    public String marketplace(SesionUsuario usuario, Model model) {
+        if (usuario == null) {
             return "redirect:/";
         }
 
-        if ("ADMIN".equals(session.getAttribute("rol"))) {
+        if (usuario.isAdmin()) {
             return "redirect:/admin/dashboard";
         }
 
-        model.addAttribute("nombreUsuario", session.getAttribute("usuarioNombre"));
+        model.addAttribute("nombreUsuario", usuario.getNombre());
+
+        // Rejilla de productos renderizada en servidor desde el catálogo cacheado.
+        // Si falla, la página carga los productos desde el navegador como antes.
+        try {
+            CatalogoService.Catalogo catalogo = catalogoService.obtenerCatalogo(usuario);
+            model.addAttribute("productosHtml", catalogoFragmentos.tarjetas(catalogo));
+            model.addAttribute("totalProductos", catalogo.getProductos().size());
+        } catch (RuntimeException e) {
+            logger.warn("Marketplace sin renderizado en servidor: {}", e.getMessage());
+        }
+
         return "cliente/marketplace";
     }
 
     @GetMapping("/producto/{id}")
-    public String productoDetalle(@PathVariable Long id, HttpSession session, Model model) {
-        String token = (String) session.getAttribute("token");
-
-        if (token == null) {
+    public String productoDetalle(@PathVariable Long id, SesionUsuario usuario, Model model) {
+        if (usuario == null) {
             return "redirect:/";
         }
 
-        if ("ADMIN".equals(session.getAttribute("rol"))) {
+        if (usuario.isAdmin()) {
             return "redirect:/admin/dashboard";
         }
 
-        model.addAttribute("nombreUsuario", session.getAttribute("usuarioNombre"));
+        model.addAttribute("nombreUsuario", usuario.getNombre());
         model.addAttribute("productoId", id);
+
+        // Datos del producto renderizados en servidor; si falla, la página los pide desde el navegador
+        try {
+            Map<String, Object> producto = catalogoService.obtenerProducto(usuario, id).getDatos();
+            model.addAttribute("producto", producto);
+            model.addAttribute("imagenProducto", imagenDe(producto));
+        } catch (RuntimeException e) {
+            logger.warn("Producto {} sin renderizado en servidor: {}", id, e.getMessage());
+        }
+
         return "cliente/producto-detalle";
     }
 
     @GetMapping("/mis-polizas")
-    public String misPolizas(HttpSession session, Model model) {
-        String token = (String) session.getAttribute("token");
-
-        if (token == null) {
+    public String misPolizas(SesionUsuario usuario, Model model) {
+        if (usuario == null) {
             return "redirect:/";
         }
 
-        if ("ADMIN".equals(session.getAttribute("rol"))) {
+        if (usuario.isAdmin()) {
             return "redirect:/admin/dashboard";
         }
 
-        model.addAttribute("nombreUsuario", session.getAttribute("usuarioNombre"));
+        model.addAttribute("nombreUsuario", usuario.getNombre());
         return "cliente/mis-polizas";
     }
-}
\ No newline at end of file
+
+    private String imagenDe(Map<String, Object> producto) {
+        Object imagenUrl = producto.get("imagenUrl");
+        if (imagenUrl != null && !imagenUrl.toString().trim().isEmpty()) {
+            return imagenUrl.toString();
+        }
+        return CatalogoFragmentos.IMAGENES_POR_CATEGORIA.getOrDefault(
+                String.valueOf(producto.get("categoria")), CatalogoFragmentos.IMAGEN_POR_DEFECTO);
+    }
+}
@@ -1,8 +1,11 @@
 package com.vesta.web.controller;
 
+import com.vesta.web.service.ApiService;
+import com.vesta.web.session.SesionUsuario;
 import jakarta.servlet.http.HttpSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -22,6 +25,9 @@ import java.util.Map;
 public class DebugController {
     private static final Logger logger = LoggerFactory.getLogger(DebugController.class);
 
+    @Autowired
+    private ApiService apiService;
+
     @GetMapping("/session")
     public Map<String, Object> checkSession(HttpSession session) {
         Map<String, Object> info = new HashMap<>();
@@ -33,19 +39,36 @@ public class DebugController {
         info.put("maxInactiveInterval", session.getMaxInactiveInterval());
 
         // Verificar atributos de sesión
-        info.put("token", session.getAttribute("token") != null ? "PRESENTE" : "NULL");
-        info.put("rol", session.getAttribute("rol"));
-        info.put("usuarioNombre", session.getAttribute("usuarioNombre"));
-        info.put("usuarioId", session.getAttribute("usuarioId"));
+        SesionUsuario usuario = SesionUsuario.de(session);
+        info.put("token", usuario != null && usuario.getToken() != null ? "PRESENTE" : "NULL");
+        info.put("rol", usuario != null ? usuario.getRol() : null);
+        info.put("usuarioNombre", usuario != null ? usuario.getNombre() : null);
+        info.put("usuarioId", usuario != null ? usuario.getUsuarioId() : null);
+        info.put("carritoItems", usuario != null ? usuario.getCarrito().getTamano() : 0);
 
         logger.debug("🔍 DEBUG - Verificación de sesión:");
         logger.debug("   Session ID: {}", session.getId());
-        logger.debug("   Token: {}", (session.getAttribute("token") != null ? "✓" : "✗"));
-        logger.debug("   Rol: {}", session.getAttribute("rol"));
+        logger.debug("   Token: {}", (usuario != null && usuario.getToken() != null ? "✓" : "✗"));
+        logger.debug("   Rol: {}", usuario != null ? usuario.getRol() : null);
 
         return info;
     }
 
+    @GetMapping("/cache")
+    public Map<String, Object> cache() {
+        Map<String, Object> info = new HashMap<>();
+        info.put("adminLists", apiService.estadisticasCacheAdmin());
+        info.put("singleFlight", apiService.estadisticasSingleFlight());
+        return info;
+    }
+
+    @GetMapping("/backend")
+    public Map<String, Object> backend() {
+        Map<String, Object> info = new HashMap<>();
+        info.put("groups", apiService.estadisticasBackend());
+        return info;
+    }
+
     @GetMapping("/health")
     public Map<String, String> health() {
         Map<String, String> status = new HashMap<>();
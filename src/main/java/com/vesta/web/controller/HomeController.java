@@ -1,7 +1,7 @@
 package com.vesta.web.controller;
 
 import com.vesta.web.service.ApiService;
-import jakarta.servlet.http.HttpSession;
+import com.vesta.web.session.Identidad;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -21,13 +21,10 @@ public class HomeController {
     private ApiService apiService;
 
     @GetMapping("/")
-    public String home(HttpSession session) {
+    public String home(Identidad usuario) {
         // Si el usuario ya está logueado, redirigir a su dashboard correspondiente
-        String token = (String) session.getAttribute("token");
-        String rol = (String) session.getAttribute("rol");
-
-        if (token != null) {
-            if ("ADMIN".equals(rol)) {
+        if (usuario != null) {
+            if (usuario.isAdmin()) {
                 return "redirect:/admin/dashboard";
             } else {
                 return "redirect:/cliente/dashboard";
@@ -2,6 +2,11 @@ package com.vesta.web.controller;
 
 import com.vesta.web.dto.AuthResponseDTO;
 import com.vesta.web.service.ApiService;
+import com.vesta.web.session.CookieIdentidad;
+import com.vesta.web.session.Identidad;
+import com.vesta.web.session.SesionUsuario;
+import com.vesta.web.session.ValidadorToken;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
@@ -20,18 +25,17 @@ public class LoginController {
     private static final Logger logger = LoggerFactory.getLogger(LoginController.class);
 
     private final ApiService apiService;
+    private final CookieIdentidad cookieIdentidad;
+    private final ValidadorToken validadorToken;
 
     // CAMBIO: Ahora la página de login se sirve en /login-page
     // La raíz "/" queda libre para el HomeController (Landing Page)
     @GetMapping("/login-page")
-    public String showLoginForm(HttpSession session) {
+    public String showLoginForm(Identidad usuario) {
         // Si ya hay sesión activa, redirigir al dashboard correspondiente
-        String token = (String) session.getAttribute("token");
-        String rol = (String) session.getAttribute("rol");
-
-        if (token != null) {
+        if (usuario != null) {
             // Redirigir según el rol del usuario
-            if ("ADMIN".equals(rol)) {
+            if (usuario.isAdmin()) {
                 return "redirect:/admin/dashboard";
             } else {
                 return "redirect:/cliente/dashboard";
@@ -44,7 +48,8 @@ public class LoginController {
     // Endpoint para procesar el login via AJAX
     @PostMapping("/login")
     @ResponseBody
-    public ResponseEntity<?> processLogin(@RequestBody LoginRequest request, HttpSession session) {
+    public ResponseEntity<?> processLogin(@RequestBody LoginRequest request, HttpSession session,
+            HttpServletResponse httpResponse) {
         try {
             logger.info("🔐 Procesando login para: {}", request.getEmail());
 
@@ -63,14 +68,14 @@ public class LoginController {
 
             // Intentar hacer login
             AuthResponseDTO response = apiService.login(request.getEmail(), request.getPassword());
+            // Firma, caducidad y rol del JWT se comprueban aquí una vez; luego basta con la caducidad guardada
+            ValidadorToken.Token token = validadorToken.validar(response.getToken(), response.getRol());
 
-            // Guardar en sesión HTTP
-            session.setAttribute("token", response.getToken());
-            session.setAttribute("rol", response.getRol());
-            session.setAttribute("usuarioNombre", response.getNombre());
-
-            // Guardar el ID del usuario en la sesión para usarlo en RGPD
-            session.setAttribute("usuarioId", response.getId());
+            // Guardar en sesión HTTP (un solo atributo con token, rol, nombre, ID y carrito)
+            SesionUsuario usuario = SesionUsuario.desde(response, token);
+            usuario.guardarEn(session);
+            // Identidad (sin token) en cookie cifrada para las páginas que no necesitan la sesión
+            cookieIdentidad.escribir(httpResponse, usuario);
 
             // Logging detallado para diagnóstico
             logger.info("✅ Login exitoso. Sesión creada para: {} (ID: {})", response.getNombre(), response.getId());
@@ -82,7 +87,7 @@ public class LoginController {
 
             // Determinar URL de redirección según el rol
             String redirectUrl;
-            if ("ADMIN".equals(response.getRol())) {
+            if (usuario.isAdmin()) {
                 redirectUrl = "/admin/dashboard";
             } else {
                 redirectUrl = "/cliente/dashboard";
@@ -121,9 +126,10 @@ public class LoginController {
     }
 
     @GetMapping("/logout")
-    public String logout(HttpSession session) {
+    public String logout(HttpSession session, HttpServletResponse response) {
         logger.info("🚪 Cerrando sesión");
         session.invalidate();
+        cookieIdentidad.borrar(response);
         return "redirect:/"; // Al salir, volvemos a la Landing Page
     }
 
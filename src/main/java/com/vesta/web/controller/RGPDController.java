@@ -1,6 +1,6 @@
 package com.vesta.web.controller;
 
-import jakarta.servlet.http.HttpSession;
+import com.vesta.web.session.Identidad;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -24,21 +24,15 @@ public class RGPDController {
     }
 
     @GetMapping("/mis-datos")
-    public String misDatos(HttpSession session, Model model) {
-        String token = (String) session.getAttribute("token");
-        
+    public String misDatos(Identidad usuario, Model model) {
         // Verificar si hay sesión activa
-        if (token == null) {
+        if (usuario == null) {
             return "redirect:/?error=login_required";
         }
 
-        // Recuperar datos de la sesión
-        String nombre = (String) session.getAttribute("usuarioNombre");
-        Long userId = (Long) session.getAttribute("usuarioId"); // Recuperar ID guardado en LoginController
-
         // Pasar datos a la vista (Thymeleaf)
-        model.addAttribute("nombreUsuario", nombre);
-        model.addAttribute("userId", userId); // CAMBIO IMPORTANTE: Pasar el ID real a la vista
+        model.addAttribute("nombreUsuario", usuario.getNombre());
+        model.addAttribute("userId", usuario.getUsuarioId()); // CAMBIO IMPORTANTE: Pasar el ID real a la vista
         
         return "legal/mis-datos";
     }
@@ -0,0 +1,17 @@
+package com.vesta.web.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Error 4xx/5xx de la API ya decodificado (una sola lectura del body)
+ */
+@Data
+@AllArgsConstructor
+public class ApiError {
+    private int status;
+    // Mensaje del campo "message" del wrapper, o "Error <status>: <body>" si no se pudo extraer
+    private String message;
+    // true si el mensaje venía en el JSON de la API
+    private boolean fromApi;
+}
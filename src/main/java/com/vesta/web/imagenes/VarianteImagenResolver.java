@@ -0,0 +1,87 @@
+package com.vesta.web.imagenes;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.resource.HttpResource;
+import org.springframework.web.servlet.resource.ResourceResolver;
+import org.springframework.web.servlet.resource.ResourceResolverChain;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Resolver de /images que cambia el original por su variante (ver VariantesImagen) según el
+ * parámetro {@code w} y la cabecera Accept. Sin parámetro se sirve el original tal cual.
+ */
+public class VarianteImagenResolver implements ResourceResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(VarianteImagenResolver.class);
+
+    private final VariantesImagen variantes;
+
+    public VarianteImagenResolver(VariantesImagen variantes) {
+        this.variantes = variantes;
+    }
+
+    @Override
+    public Resource resolveResource(HttpServletRequest request, String requestPath,
+            List<? extends Resource> locations, ResourceResolverChain chain) {
+        Resource original = chain.resolveResource(request, requestPath, locations);
+        if (original == null || request == null) {
+            return original;
+        }
+        try {
+            Path variante = variantes.variante(original, requestPath, ancho(request),
+                    request.getHeader(HttpHeaders.ACCEPT));
+            if (variante != null) {
+                return new Variante(variante, variantes.negociaFormato());
+            }
+        } catch (IOException | RuntimeException e) {
+            // Ante cualquier problema con la variante, el original sigue siendo una respuesta válida
+            logger.warn("No se pudo generar la variante de {}: {}", requestPath, e.getMessage());
+        }
+        return original;
+    }
+
+    @Override
+    public String resolveUrlPath(String resourcePath, List<? extends Resource> locations,
+            ResourceResolverChain chain) {
+        return chain.resolveUrlPath(resourcePath, locations);
+    }
+
+    static int ancho(HttpServletRequest request) {
+        String w = request.getParameter("w");
+        if (w == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(w));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // Fichero de la variante; Vary: Accept solo si el formato depende de lo que acepte el navegador
+    private static final class Variante extends FileSystemResource implements HttpResource {
+        private final boolean varia;
+
+        Variante(Path fichero, boolean varia) {
+            super(fichero);
+            this.varia = varia;
+        }
+
+        @Override
+        public HttpHeaders getResponseHeaders() {
+            HttpHeaders headers = new HttpHeaders();
+            if (varia) {
+                headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            }
+            return headers;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.vesta.web.imagenes;
+
+import com.vesta.web.cache.SingleFlight;
+import com.vesta.web.metrics.ApiMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Variantes de las imágenes de /images por ancho y formato, generadas la primera vez que se piden
+ * y guardadas en disco
+ *
+ * El ancho pedido (?w=) se ajusta al escalón más cercano por arriba de {@code imagenes.anchos} para
+ * que no haya una variante por cada píxel. Las imágenes opacas se recodifican a JPEG (los PNG del
+ * catálogo son fotos de casi 1 MB); las que usan transparencia siguen en PNG.
+ * WebP/AVIF solo si hay un ImageWriter de ese formato en el classpath (el JDK no trae ninguno) y el
+ * navegador lo acepta.
+ */
+@Component
+public class VariantesImagen {
+
+    private static final Logger logger = LoggerFactory.getLogger(VariantesImagen.class);
+
+    private static final List<String> EXTENSIONES = List.of(".jpg", ".jpeg", ".png");
+    // Formatos modernos por orden de preferencia (se usan si hay encoder instalado)
+    private static final List<String> FORMATOS_MODERNOS = List.of("avif", "webp");
+    // Marca de "el original ya es lo mejor que hay" (p. ej. la imagen es más estrecha que el escalón)
+    private static final Path SIN_VARIANTE = Paths.get("");
+
+    private final boolean habilitado;
+    private final List<Integer> anchos;
+    private final float calidad;
+    private final Path directorio;
+    private final List<String> formatosModernos = new ArrayList<>();
+
+    private final SingleFlight<String, Path> generando = new SingleFlight<>("imagenes");
+    // Una foto grande decodificada ocupa decenas de MB: pocas generaciones a la vez
+    private final Semaphore decodificando = new Semaphore(2);
+    // Variantes que no compensa generar, con la fecha del original con que se decidió
+    private final Map<Path, Long> sinVariante = new ConcurrentHashMap<>();
+
+    private final ApiMetrics metrics;
+
+    public VariantesImagen(ApiMetrics metrics,
+            @Value("${imagenes.variantes.enabled:true}") boolean habilitado,
+            @Value("${imagenes.anchos:320,480,640,960,1280}") List<Integer> anchos,
+            @Value("${imagenes.calidad:0.8}") float calidad,
+            @Value("${imagenes.dir:${java.io.tmpdir}/vesta-imagenes}") String directorio) {
+        this.metrics = metrics;
+        this.habilitado = habilitado;
+        this.anchos = anchos.stream().sorted().toList();
+        this.calidad = calidad;
+        this.directorio = Paths.get(directorio).toAbsolutePath().normalize();
+    }
+
+    @PostConstruct
+    void init() {
+        metrics.registrar(generando);
+        for (String formato : FORMATOS_MODERNOS) {
+            if (ImageIO.getImageWritersByFormatName(formato).hasNext()) {
+                formatosModernos.add(formato);
+            }
+        }
+        logger.info("Variantes de imagen: anchos {}, formatos modernos {}", anchos,
+                formatosModernos.isEmpty() ? "ninguno (solo JPEG/PNG)" : formatosModernos);
+    }
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+    public List<Integer> getAnchos() {
+        return anchos;
+    }
+
+    /**
+     * true si el formato servido puede depender de la cabecera Accept (hay que añadir Vary: Accept)
+     */
+    public boolean negociaFormato() {
+        return !formatosModernos.isEmpty();
+    }
+
+    /**
+     * true si para esta petición se serviría una variante en lugar del original
+     */
+    public boolean cambiaOriginal(int ancho, String accept) {
+        return habilitado && (ancho > 0 || formatoPara(accept) != null);
+    }
+
+    /**
+     * srcset para una imagen local de /images ("/images/x.png?w=320 320w, ..."), o null si la URL es externa
+     */
+    public String srcset(String url) {
+        if (!habilitado || url == null || !url.startsWith("/images/") || url.contains("?") || !admite(url)) {
+            return null;
+        }
+        StringBuilder srcset = new StringBuilder();
+        for (Integer ancho : anchos) {
+            if (srcset.length() > 0) {
+                srcset.append(", ");
+            }
+            srcset.append(url).append("?w=").append(ancho).append(' ').append(ancho).append('w');
+        }
+        return srcset.toString();
+    }
+
+    /**
+     * Fichero de la variante, o null si hay que servir el original (no es una imagen admitida o
+     * el ancho pedido no es menor que el original y no hay un formato mejor)
+     *
+     * @param ruta   ruta relativa a /images (productos/viaje.png)
+     * @param ancho  ancho pedido, 0 si no se indicó
+     * @param accept cabecera Accept de la petición (puede ser null)
+     */
+    public Path variante(Resource original, String ruta, int ancho, String accept) throws IOException {
+        if (!habilitado || !admite(ruta)) {
+            return null;
+        }
+        int escalon = escalon(ancho);
+        String formato = formatoPara(accept);
+        if (escalon == 0 && formato == null) {
+            return null;
+        }
+
+        String sufijo = formato != null ? formato : "auto";
+        Path destino = directorio.resolve(escalon + "-" + sufijo).resolve(ruta).normalize();
+        if (!destino.startsWith(directorio)) {
+            return null;
+        }
+
+        long modificado = original.lastModified();
+        Long descartada = sinVariante.get(destino);
+        if (descartada != null && descartada == modificado) {
+            return null;
+        }
+        Path existente = buscar(destino);
+        if (existente != null && Files.getLastModifiedTime(existente).toMillis() >= modificado) {
+            return existente;
+        }
+
+        try {
+            Path generada = generando.execute(destino.toString(), () -> generar(original, destino, escalon, formato));
+            if (generada.equals(SIN_VARIANTE)) {
+                sinVariante.put(destino, modificado);
+                return null;
+            }
+            return generada;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private Path generar(Resource original, Path destino, int ancho, String formato) {
+        decodificando.acquireUninterruptibly();
+        try {
+            BufferedImage imagen;
+            try (InputStream in = original.getInputStream()) {
+                imagen = ImageIO.read(in);
+            }
+            if (imagen == null) {
+                return SIN_VARIANTE;
+            }
+            if (ancho == 0 || ancho >= imagen.getWidth()) {
+                if (formato == null && !esPngOpaco(original, imagen)) {
+                    return SIN_VARIANTE;
+                }
+                ancho = imagen.getWidth();
+            }
+
+            boolean opaca = !usaTransparencia(imagen);
+            String formatoFinal = formato != null ? formato : (opaca ? "jpeg" : "png");
+            BufferedImage escalada = escalar(imagen, ancho, opaca || "jpeg".equals(formatoFinal));
+
+            Path fichero = destino.resolveSibling(destino.getFileName() + "." + extension(formatoFinal));
+            Files.createDirectories(fichero.getParent());
+            Path temporal = Files.createTempFile(fichero.getParent(), "variante", ".tmp");
+            escribir(escalada, formatoFinal, temporal);
+            // Sustitución atómica: quien la lea a la vez nunca ve un fichero a medias
+            Files.move(temporal, fichero, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            logger.debug("Variante {} generada: {}x{} {} ({} KB)", fichero.getFileName(), escalada.getWidth(),
+                    escalada.getHeight(), formatoFinal, Files.size(fichero) / 1024);
+            return fichero;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            decodificando.release();
+        }
+    }
+
+    // La variante se guarda como <ruta>.<ext>; la extensión depende de si la imagen es opaca
+    private Path buscar(Path destino) {
+        for (String ext : List.of("jpg", "png", "webp", "avif")) {
+            Path candidato = destino.resolveSibling(destino.getFileName() + "." + ext);
+            if (Files.exists(candidato)) {
+                return candidato;
+            }
+        }
+        return null;
+    }
+
+    private int escalon(int ancho) {
+        if (ancho <= 0) {
+            return 0;
+        }
+        for (Integer escalon : anchos) {
+            if (escalon >= ancho) {
+                return escalon;
+            }
+        }
+        return anchos.get(anchos.size() - 1);
+    }
+
+    private String formatoPara(String accept) {
+        if (accept == null) {
+            return null;
+        }
+        for (String formato : formatosModernos) {
+            if (accept.contains("image/" + formato)) {
+                return formato;
+            }
+        }
+        return null;
+    }
+
+    private static boolean admite(String ruta) {
+        String nombre = ruta.toLowerCase(Locale.ROOT);
+        return EXTENSIONES.stream().anyMatch(nombre::endsWith);
+    }
+
+    // Un PNG opaco a tamaño completo también compensa pasarlo a JPEG
+    private static boolean esPngOpaco(Resource original, BufferedImage imagen) {
+        String nombre = original.getFilename();
+        return nombre != null && nombre.toLowerCase(Locale.ROOT).endsWith(".png") && !usaTransparencia(imagen);
+    }
+
+    private static boolean usaTransparencia(BufferedImage imagen) {
+        if (!imagen.getColorModel().hasAlpha()) {
+            return false;
+        }
+        for (int y = 0; y < imagen.getHeight(); y++) {
+            for (int x = 0; x < imagen.getWidth(); x++) {
+                if ((imagen.getRGB(x, y) >>> 24) != 0xFF) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Reducción en pasos de la mitad como mucho: con bilineal en un solo paso se pierde nitidez
+    private static BufferedImage escalar(BufferedImage imagen, int ancho, boolean opaca) {
+        int tipo = opaca ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage actual = imagen;
+        int w = imagen.getWidth();
+        int h = imagen.getHeight();
+        do {
+            w = Math.max(ancho, w / 2);
+            h = Math.max(1, (int) Math.round((double) imagen.getHeight() * w / imagen.getWidth()));
+            BufferedImage paso = new BufferedImage(w, h, tipo);
+            Graphics2D g = paso.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(actual, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            actual = paso;
+        } while (w > ancho);
+        return actual;
+    }
+
+    private void escribir(BufferedImage imagen, String formato, Path fichero) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(formato);
+        if (!writers.hasNext()) {
+            throw new IOException("Sin ImageWriter para " + formato);
+        }
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(fichero.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (!"png".equals(formato) && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                if (param.getCompressionType() == null && param.getCompressionTypes() != null) {
+                    param.setCompressionType(param.getCompressionTypes()[0]);
+                }
+                param.setCompressionQuality(calidad);
+            }
+            if ("jpeg".equals(formato) && param.canWriteProgressive()) {
+                param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            }
+            writer.write(null, new IIOImage(imagen, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static String extension(String formato) {
+        return "jpeg".equals(formato) ? "jpg" : formato;
+    }
+}
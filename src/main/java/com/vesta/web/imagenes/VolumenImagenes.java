@@ -0,0 +1,379 @@
+package com.vesta.web.imagenes;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Ficheros del volumen de imágenes ({@code /app/images}) listos para servir sin tocar disco
+ *
+ * Los metadatos (tamaño, fecha, ETag, tipo) de cada fichero pedido se guardan hasta que el
+ * WatchService avisa de un cambio, así que una petición repetida no hace ni un stat.
+ * Los ficheros pequeños y muy pedidos se copian a memoria fuera del heap (LRU acotada por bytes); los
+ * grandes se envían con sendfile desde VolumenImagenesFilter.
+ *
+ * No se mapean con mmap: si se reescribe el fichero en el sitio (cp sobre el original) y encoge, leer el
+ * mapa da SIGBUS y tumba el hilo con InternalError. Una copia que no coincide en tamaño y fecha con los
+ * metadatos se descarta con {@link FicheroCambiadoException}.
+ */
+@Component
+public class VolumenImagenes {
+
+    private static final Logger logger = LoggerFactory.getLogger(VolumenImagenes.class);
+
+    // Tope de rutas recordadas: las que no existen no se guardan por encima de esto (rutas inventadas)
+    private static final int MAX_METADATOS = 10_000;
+
+    private final Path raiz;
+    private final boolean habilitado;
+    private final long maxBytesCache;
+    private final long maxBytesFichero;
+
+    private final Map<Path, Fichero> metadatos = new ConcurrentHashMap<>();
+    // LRU por orden de acceso; protegida por el monitor de la propia instancia
+    private final LinkedHashMap<Path, ByteBuffer> contenidos = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytesEnCache;
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+
+    // Sube con cada invalidación: un stat hecho antes de un cambio no se guarda después de él
+    private final AtomicLong generacion = new AtomicLong();
+
+    private WatchService watcher;
+    private volatile boolean activo;
+
+    public VolumenImagenes(@Value("${imagenes.volumen.dir:/app/images}") String raiz,
+            @Value("${imagenes.volumen.enabled:true}") boolean habilitado,
+            @Value("${imagenes.volumen.cache.max-size:64MB}") DataSize maxBytesCache,
+            @Value("${imagenes.volumen.cache.max-file-size:2MB}") DataSize maxBytesFichero) {
+        this.raiz = Paths.get(raiz).toAbsolutePath().normalize();
+        this.habilitado = habilitado;
+        this.maxBytesCache = maxBytesCache.toBytes();
+        this.maxBytesFichero = maxBytesFichero.toBytes();
+    }
+
+    @PostConstruct
+    void iniciar() {
+        if (!habilitado || !Files.isDirectory(raiz)) {
+            logger.info("Volumen de imágenes {} no disponible, /images se sirve solo desde classpath", raiz);
+            return;
+        }
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            registrarArbol(raiz);
+        } catch (IOException e) {
+            // Sin watcher no se sabría cuándo invalidar: mejor no cachear nada
+            logger.warn("No se pudo vigilar {}: {}. Se sirve con el handler de recursos", raiz, e.getMessage());
+            return;
+        }
+        activo = true;
+        Thread hiloWatcher = new Thread(this::vigilar, "imagenes-watcher");
+        hiloWatcher.setDaemon(true);
+        hiloWatcher.start();
+        logger.info("Volumen de imágenes {} servido directamente (caché {} MB)", raiz, maxBytesCache >> 20);
+    }
+
+    public boolean isActivo() {
+        return activo;
+    }
+
+    /**
+     * Fichero del volumen para la ruta relativa (productos/viaje.png), o null si no existe o la ruta
+     * se sale del volumen
+     */
+    public Fichero buscar(String ruta) {
+        if (ruta.isEmpty() || ruta.contains("..") || ruta.contains("\\") || ruta.contains(":")) {
+            return null;
+        }
+        Path path = raiz.resolve(ruta).normalize();
+        if (!path.startsWith(raiz)) {
+            return null;
+        }
+        Fichero fichero = metadatos.get(path);
+        if (fichero != null) {
+            return fichero.existe ? fichero : null;
+        }
+        long leidaEn = generacion.get();
+        fichero = leerMetadatos(path);
+        if ((fichero.existe || metadatos.size() < MAX_METADATOS) && generacion.get() == leidaEn) {
+            metadatos.put(path, fichero);
+        }
+        return fichero.existe ? fichero : null;
+    }
+
+    /**
+     * Contenido en memoria si el fichero cabe en la caché, o null para enviarlo desde disco.
+     * El buffer devuelto es una vista propia (posición independiente).
+     *
+     * @throws FicheroCambiadoException si el fichero en disco ya no es el de estos metadatos
+     */
+    public ByteBuffer contenido(Fichero fichero) throws IOException {
+        if (fichero.tamano > maxBytesFichero) {
+            return null;
+        }
+        synchronized (this) {
+            ByteBuffer cacheado = contenidos.get(fichero.path);
+            if (cacheado != null) {
+                aciertos.increment();
+                return cacheado.duplicate();
+            }
+        }
+        fallos.increment();
+        ByteBuffer copia = leer(fichero);
+        synchronized (this) {
+            // Si el watcher lo invalidó mientras se leía, se sirve pero no se guarda
+            if (metadatos.get(fichero.path) == fichero && !contenidos.containsKey(fichero.path)) {
+                contenidos.put(fichero.path, copia);
+                bytesEnCache += fichero.tamano;
+                expulsar();
+            }
+        }
+        return copia.duplicate();
+    }
+
+    /**
+     * Comprueba con un stat que el fichero sigue teniendo el tamaño y la fecha de los metadatos, antes de
+     * pasarle la ruta y el tamaño a sendfile
+     *
+     * @throws FicheroCambiadoException si ha cambiado (y olvida los metadatos)
+     */
+    public void comprobar(Fichero fichero) throws FicheroCambiadoException {
+        Fichero actual = leerMetadatos(fichero.path);
+        if (!actual.existe || actual.tamano != fichero.tamano || actual.modificadoExacto != fichero.modificadoExacto) {
+            cambiado(fichero);
+        }
+    }
+
+    private ByteBuffer leer(Fichero fichero) throws IOException {
+        ByteBuffer copia = ByteBuffer.allocateDirect((int) fichero.tamano);
+        try (FileChannel canal = FileChannel.open(fichero.path, StandardOpenOption.READ)) {
+            while (copia.hasRemaining()) {
+                if (canal.read(copia, copia.position()) < 0) {
+                    cambiado(fichero);
+                }
+            }
+            // Más largo o reescrito con el mismo tamaño mientras se leía
+            if (canal.size() != fichero.tamano
+                    || Files.getLastModifiedTime(fichero.path).toMillis() != fichero.modificadoExacto) {
+                cambiado(fichero);
+            }
+        }
+        return copia.flip();
+    }
+
+    // Sin esperar al watcher: la siguiente búsqueda vuelve a leer los metadatos
+    private void cambiado(Fichero fichero) throws FicheroCambiadoException {
+        invalidar(fichero.path);
+        throw new FicheroCambiadoException(fichero.path);
+    }
+
+    public long getAciertos() {
+        return aciertos.sum();
+    }
+
+    public long getFallos() {
+        return fallos.sum();
+    }
+
+    public synchronized long getBytesEnCache() {
+        return bytesEnCache;
+    }
+
+    // La memoria fuera del heap se libera cuando el GC recoge el buffer expulsado
+    private void expulsar() {
+        Iterator<Map.Entry<Path, ByteBuffer>> it = contenidos.entrySet().iterator();
+        while (bytesEnCache > maxBytesCache && it.hasNext()) {
+            bytesEnCache -= it.next().getValue().capacity();
+            it.remove();
+        }
+    }
+
+    private void invalidar(Path path) {
+        generacion.incrementAndGet();
+        // Un directorio renombrado o borrado invalida todo lo que cuelga de él
+        metadatos.keySet().removeIf(p -> p.startsWith(path));
+        synchronized (this) {
+            Iterator<Map.Entry<Path, ByteBuffer>> it = contenidos.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Path, ByteBuffer> entrada = it.next();
+                if (entrada.getKey().startsWith(path)) {
+                    bytesEnCache -= entrada.getValue().capacity();
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private void invalidarTodo() {
+        generacion.incrementAndGet();
+        metadatos.clear();
+        synchronized (this) {
+            contenidos.clear();
+            bytesEnCache = 0;
+        }
+    }
+
+    private void vigilar() {
+        while (activo) {
+            WatchKey clave;
+            try {
+                clave = watcher.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path directorio = (Path) clave.watchable();
+            for (WatchEvent<?> evento : clave.pollEvents()) {
+                if (evento.kind() == OVERFLOW) {
+                    invalidarTodo();
+                    continue;
+                }
+                Path cambiado = directorio.resolve((Path) evento.context());
+                invalidar(cambiado);
+                if (evento.kind() == ENTRY_CREATE && Files.isDirectory(cambiado)) {
+                    try {
+                        registrarArbol(cambiado);
+                    } catch (IOException e) {
+                        logger.warn("No se pudo vigilar el directorio nuevo {}: {}", cambiado, e.getMessage());
+                    }
+                }
+            }
+            if (!clave.reset()) {
+                invalidar(directorio);
+            }
+        }
+    }
+
+    private void registrarArbol(Path inicio) throws IOException {
+        Files.walkFileTree(inicio, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                dir.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static Fichero leerMetadatos(Path path) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attrs.isRegularFile()) {
+                return Fichero.noExiste(path);
+            }
+            return new Fichero(path, attrs.size(), attrs.lastModifiedTime().toMillis());
+        } catch (IOException e) {
+            return Fichero.noExiste(path);
+        }
+    }
+
+    @PreDestroy
+    void parar() throws IOException {
+        activo = false;
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    /**
+     * Metadatos de un fichero del volumen (también se guardan los que no existen, para no
+     * volver a consultarlos hasta que el watcher vea que aparecen)
+     */
+    public static final class Fichero {
+        private final Path path;
+        private final boolean existe;
+        private final long tamano;
+        private final long modificado;
+        private final long modificadoExacto;
+        private final String etag;
+        private final MediaType tipo;
+
+        Fichero(Path path, long tamano, long modificado) {
+            this.path = path;
+            this.existe = true;
+            this.tamano = tamano;
+            // Segundos: Last-Modified / If-Modified-Since no tienen más precisión
+            this.modificado = modificado / 1000 * 1000;
+            this.modificadoExacto = modificado;
+            // Fuerte: cambia con cada escritura del fichero (fecha en ms y tamaño), como nginx
+            this.etag = "\"" + Long.toHexString(modificado) + "-" + Long.toHexString(tamano) + "\"";
+            this.tipo = MediaTypeFactory.getMediaType(path.getFileName().toString())
+                    .orElse(MediaType.APPLICATION_OCTET_STREAM);
+        }
+
+        private Fichero(Path path) {
+            this.path = path;
+            this.existe = false;
+            this.tamano = 0;
+            this.modificado = 0;
+            this.modificadoExacto = 0;
+            this.etag = null;
+            this.tipo = null;
+        }
+
+        static Fichero noExiste(Path path) {
+            return new Fichero(path);
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getTamano() {
+            return tamano;
+        }
+
+        public long getModificado() {
+            return modificado;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public MediaType getTipo() {
+            return tipo;
+        }
+    }
+
+    /**
+     * El fichero se ha reescrito desde que se leyeron sus metadatos; aún no se ha enviado nada de él
+     */
+    public static final class FicheroCambiadoException extends IOException {
+        FicheroCambiadoException(Path path) {
+            super("El fichero " + path + " ha cambiado mientras se servía");
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.vesta.web.imagenes;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.session.web.http.SessionRepositoryFilter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+/**
+ * Sirve /images desde el volumen ({@code /app/images}) sin pasar por DispatcherServlet ni por la
+ * cadena de recursos de Spring
+ *
+ * Ficheros pequeños: desde la copia en memoria de VolumenImagenes. Grandes: sendfile de Tomcat (el
+ * kernel copia del fichero al socket sin pasar por la JVM); sin sendfile (p. ej. con TLS), con
+ * FileChannel. ETag fuerte, Last-Modified, peticiones condicionales (304) y Range de un intervalo
+ * (206/416). Lo que no está en el volumen, las variantes (?w=) y los métodos distintos de GET/HEAD
+ * siguen al handler de recursos de WebConfig, igual que un fichero que se reescribe mientras se sirve.
+ */
+@Component
+// Antes de Spring Session: una imagen no necesita la sesión
+@Order(SessionRepositoryFilter.DEFAULT_ORDER - 1)
+public class VolumenImagenesFilter extends OncePerRequestFilter {
+
+    private static final String PREFIJO = "/images/";
+
+    // Atributos de Tomcat para sendfile (ver org.apache.catalina.servlets.DefaultServlet)
+    private static final String SENDFILE_SOPORTADO = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FICHERO = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_INICIO = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIN = "org.apache.tomcat.sendfile.end";
+
+    private final VolumenImagenes volumen;
+    private final VariantesImagen variantes;
+    private final String cacheControl;
+    // Por debajo de este tamaño sendfile no compensa frente a copiar desde memoria
+    private final long minimoSendfile;
+
+    public VolumenImagenesFilter(VolumenImagenes volumen, VariantesImagen variantes,
+            @Value("${imagenes.volumen.cache-control.max-age:1h}") Duration maxAge,
+            @Value("${imagenes.volumen.sendfile-min-size:48KB}") DataSize minimoSendfile) {
+        this.volumen = volumen;
+        this.variantes = variantes;
+        this.cacheControl = "public, max-age=" + maxAge.getSeconds();
+        this.minimoSendfile = minimoSendfile.toBytes();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String metodo = request.getMethod();
+        return !volumen.isActivo()
+                || !("GET".equals(metodo) || "HEAD".equals(metodo))
+                || !rutaPeticion(request).startsWith(PREFIJO);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (variantes.cambiaOriginal(VarianteImagenResolver.ancho(request), request.getHeader(HttpHeaders.ACCEPT))) {
+            chain.doFilter(request, response);
+            return;
+        }
+        String ruta = UriUtils.decode(rutaPeticion(request).substring(PREFIJO.length()), StandardCharsets.UTF_8);
+        VolumenImagenes.Fichero fichero = volumen.buscar(ruta);
+        if (fichero == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        response.setHeader(HttpHeaders.ETAG, fichero.getEtag());
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, fichero.getModificado());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (noModificado(request, fichero)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long tamano = fichero.getTamano();
+        long inicio = 0;
+        long fin = tamano - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && rangoAplicable(request, fichero)) {
+            long[] intervalo = intervalo(range, tamano);
+            if (intervalo == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + tamano);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (intervalo.length == 2) {
+                inicio = intervalo[0];
+                fin = intervalo[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + inicio + "-" + fin + "/" + tamano);
+            }
+        }
+
+        long longitud = fin - inicio + 1;
+        response.setContentType(fichero.getTipo().toString());
+        response.setContentLengthLong(longitud);
+        if ("HEAD".equals(request.getMethod()) || longitud == 0) {
+            return;
+        }
+        try {
+            enviar(request, response, fichero, inicio, longitud);
+        } catch (VolumenImagenes.FicheroCambiadoException e) {
+            // Aún no se ha escrito nada: cabeceras fuera y lo sirve el handler de recursos con el fichero nuevo
+            response.reset();
+            chain.doFilter(request, response);
+        }
+    }
+
+    private void enviar(HttpServletRequest request, HttpServletResponse response, VolumenImagenes.Fichero fichero,
+            long inicio, long longitud) throws IOException {
+        if (longitud >= minimoSendfile && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SOPORTADO))) {
+            // Tomcat abre el fichero al final con este tamaño: si ha encogido, la respuesta quedaría corta
+            volumen.comprobar(fichero);
+            // Tomcat envía el fichero al terminar la petición; aquí no se escribe nada
+            request.setAttribute(SENDFILE_FICHERO, fichero.getPath().toString());
+            request.setAttribute(SENDFILE_INICIO, inicio);
+            request.setAttribute(SENDFILE_FIN, inicio + longitud);
+            return;
+        }
+
+        OutputStream out = response.getOutputStream();
+        WritableByteChannel destino = Channels.newChannel(out);
+        ByteBuffer contenido = volumen.contenido(fichero);
+        if (contenido != null) {
+            ByteBuffer trozo = contenido.slice((int) inicio, (int) longitud);
+            while (trozo.hasRemaining()) {
+                destino.write(trozo);
+            }
+            return;
+        }
+        try (FileChannel canal = FileChannel.open(fichero.getPath(), StandardOpenOption.READ)) {
+            long enviado = 0;
+            while (enviado < longitud) {
+                long escrito = canal.transferTo(inicio + enviado, longitud - enviado, destino);
+                if (escrito <= 0) {
+                    break;
+                }
+                enviado += escrito;
+            }
+        }
+    }
+
+    private static boolean noModificado(HttpServletRequest request, VolumenImagenes.Fichero fichero) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            // Comparación débil, como pide RFC 9110 para If-None-Match
+            for (String etag : ifNoneMatch.split(",")) {
+                String candidato = etag.trim();
+                if (candidato.equals("*") || quitarDebil(candidato).equals(fichero.getEtag())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = fecha(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && fichero.getModificado() <= ifModifiedSince;
+    }
+
+    // If-Range: el Range solo vale si el fichero sigue siendo el mismo (ETag fuerte o fecha exacta)
+    private static boolean rangoAplicable(HttpServletRequest request, VolumenImagenes.Fichero fichero) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(fichero.getEtag());
+        }
+        long fecha = fecha(request, HttpHeaders.IF_RANGE);
+        return fecha >= 0 && fecha == fichero.getModificado();
+    }
+
+    /**
+     * {inicio, fin} del Range, {} para ignorarlo (servir completo) o null si no es satisfacible.
+     * Varios intervalos se ignoran: la respuesta completa es válida y evita multipart.
+     */
+    static long[] intervalo(String range, long tamano) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int guion = spec.indexOf('-');
+        if (guion < 0) {
+            return new long[0];
+        }
+        try {
+            String desde = spec.substring(0, guion).trim();
+            String hasta = spec.substring(guion + 1).trim();
+            long inicio;
+            long fin;
+            if (desde.isEmpty()) {
+                // bytes=-N: los N últimos
+                long sufijo = Long.parseLong(hasta);
+                if (sufijo <= 0) {
+                    return null;
+                }
+                inicio = Math.max(0, tamano - sufijo);
+                fin = tamano - 1;
+            } else {
+                inicio = Long.parseLong(desde);
+                fin = hasta.isEmpty() ? tamano - 1 : Math.min(Long.parseLong(hasta), tamano - 1);
+            }
+            if (inicio >= tamano || inicio > fin) {
+                return null;
+            }
+            return new long[] {inicio, fin};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    private static String quitarDebil(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private static long fecha(HttpServletRequest request, String cabecera) {
+        try {
+            return request.getDateHeader(cabecera);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private static String rutaPeticion(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+}
@@ -0,0 +1,114 @@
+package com.vesta.web.metrics;
+
+import com.vesta.web.cache.SingleFlight;
+import com.vesta.web.cache.TtlCache;
+import com.vesta.web.resilience.BackendNoDisponibleException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.function.Supplier;
+
+/**
+ * Métricas y trazas de las llamadas al backend
+ *
+ * {@code vesta.backend.requests}: observación por operación de ApiService (login, registro, checkout,
+ * admin.ordenes...) con las etiquetas outcome (SUCCESS, CLIENT_ERROR, SERVER_ERROR, REJECTED,
+ * IO_ERROR, UNKNOWN) y status (código HTTP, o NONE si no hubo respuesta).
+ * Genera el timer y además un span hijo del de la petición entrante, que a su vez es padre del
+ * span http.client.requests de RestTemplate: así se separa la espera en el guard de la llamada HTTP.
+ * Los histogramas se activan por configuración ({@code management.metrics.distribution.*}).
+ */
+@Component
+public class ApiMetrics {
+
+    public static final String BACKEND_REQUESTS = "vesta.backend.requests";
+
+    private final MeterRegistry registry;
+    private final ObservationRegistry observationRegistry;
+
+    public ApiMetrics(MeterRegistry registry, ObservationRegistry observationRegistry) {
+        this.registry = registry;
+        this.observationRegistry = observationRegistry;
+    }
+
+    public <T> T medir(String operacion, Supplier<T> llamada) {
+        Observation observation = Observation.createNotStarted(BACKEND_REQUESTS, observationRegistry)
+                .contextualName("backend " + operacion)
+                .lowCardinalityKeyValue("operation", operacion)
+                .start();
+        String outcome = "SUCCESS";
+        String status = "NONE";
+        try (Observation.Scope scope = observation.openScope()) {
+            T resultado = llamada.get();
+            if (resultado instanceof ResponseEntity<?> response) {
+                status = String.valueOf(response.getStatusCode().value());
+            }
+            return resultado;
+        } catch (HttpStatusCodeException e) {
+            outcome = e.getStatusCode().is4xxClientError() ? "CLIENT_ERROR" : "SERVER_ERROR";
+            status = String.valueOf(e.getStatusCode().value());
+            observation.error(e);
+            throw e;
+        } catch (BackendNoDisponibleException e) {
+            outcome = "REJECTED";
+            observation.error(e);
+            throw e;
+        } catch (ResourceAccessException e) {
+            outcome = "IO_ERROR";
+            observation.error(e);
+            throw e;
+        } catch (RuntimeException | Error e) {
+            outcome = "UNKNOWN";
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.lowCardinalityKeyValue("outcome", outcome)
+                    .lowCardinalityKeyValue("status", status)
+                    .stop();
+        }
+    }
+
+    /**
+     * Tamaño y contadores de una caché en memoria ({@code vesta.cache.*}, etiqueta cache)
+     */
+    public void registrar(TtlCache<?, ?> cache) {
+        Gauge.builder("vesta.cache.size", cache, TtlCache::size)
+                .tag("cache", cache.getName())
+                .register(registry);
+        FunctionCounter.builder("vesta.cache.gets", cache, TtlCache::getHits)
+                .tag("cache", cache.getName())
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("vesta.cache.gets", cache, TtlCache::getMisses)
+                .tag("cache", cache.getName())
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("vesta.cache.evictions", cache, TtlCache::getEvictions)
+                .tag("cache", cache.getName())
+                .register(registry);
+    }
+
+    /**
+     * Llamadas ejecutadas y agrupadas por un single-flight ({@code vesta.singleflight.*}, etiqueta name)
+     */
+    public void registrar(SingleFlight<?, ?> singleFlight) {
+        FunctionCounter.builder("vesta.singleflight.calls", singleFlight, SingleFlight::getEjecutadas)
+                .tag("name", singleFlight.getName())
+                .tag("result", "executed")
+                .register(registry);
+        FunctionCounter.builder("vesta.singleflight.calls", singleFlight, SingleFlight::getColapsadas)
+                .tag("name", singleFlight.getName())
+                .tag("result", "collapsed")
+                .register(registry);
+        Gauge.builder("vesta.singleflight.in.flight", singleFlight, SingleFlight::getEnCurso)
+                .tag("name", singleFlight.getName())
+                .register(registry);
+    }
+}
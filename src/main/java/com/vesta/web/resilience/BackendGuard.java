@@ -0,0 +1,106 @@
+package com.vesta.web.resilience;
+
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Protección de un grupo de llamadas al backend: bulkhead (máximo de llamadas simultáneas)
+ * más circuit breaker. Un 4xx cuenta como éxito porque el backend está respondiendo.
+ */
+public class BackendGuard {
+
+    private final String nombre;
+    private final Semaphore bulkhead;
+    private final int maxConcurrentes;
+    private final long esperaBulkheadNanos;
+    private final CircuitBreaker circuitBreaker;
+
+    private final LongAdder rechazosCircuito = new LongAdder();
+    private final LongAdder rechazosBulkhead = new LongAdder();
+
+    public BackendGuard(String nombre, int maxConcurrentes, Duration esperaBulkhead, CircuitBreaker circuitBreaker) {
+        this.nombre = nombre;
+        this.maxConcurrentes = Math.max(1, maxConcurrentes);
+        this.bulkhead = new Semaphore(this.maxConcurrentes);
+        this.esperaBulkheadNanos = esperaBulkhead.toNanos();
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public <T> T execute(Supplier<T> llamada) {
+        if (!entrarBulkhead()) {
+            rechazosBulkhead.increment();
+            throw new BackendNoDisponibleException("Demasiadas llamadas simultáneas al backend (" + nombre + ")");
+        }
+
+        try {
+            if (!circuitBreaker.permitir()) {
+                rechazosCircuito.increment();
+                throw new BackendNoDisponibleException("Backend no disponible, circuito abierto (" + nombre + ")");
+            }
+
+            try {
+                T resultado = llamada.get();
+                circuitBreaker.exito();
+                return resultado;
+            } catch (HttpClientErrorException e) {
+                circuitBreaker.exito();
+                throw e;
+            } catch (RuntimeException | Error e) {
+                circuitBreaker.fallo();
+                throw e;
+            }
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public CircuitBreaker.Estado getEstado() {
+        return circuitBreaker.getEstado();
+    }
+
+    public int getEnCurso() {
+        return maxConcurrentes - bulkhead.availablePermits();
+    }
+
+    public long getRechazosCircuito() {
+        return rechazosCircuito.sum();
+    }
+
+    public long getRechazosBulkhead() {
+        return rechazosBulkhead.sum();
+    }
+
+    /**
+     * Resumen de estado para diagnóstico
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", nombre);
+        stats.put("state", getEstado());
+        stats.put("inFlight", getEnCurso());
+        stats.put("maxConcurrent", maxConcurrentes);
+        stats.put("rejectedOpen", getRechazosCircuito());
+        stats.put("rejectedBulkhead", getRechazosBulkhead());
+        return stats;
+    }
+
+    private boolean entrarBulkhead() {
+        try {
+            return bulkhead.tryAcquire(esperaBulkheadNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
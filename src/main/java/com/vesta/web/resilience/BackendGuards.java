@@ -0,0 +1,61 @@
+package com.vesta.web.resilience;
+
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Grupos de llamadas al backend, cada uno con su propio circuit breaker y bulkhead.
+ * Se configuran con {@code api.resilience.<grupo>.*}.
+ */
+@Component
+public class BackendGuards {
+
+    private final BackendGuard auth;
+    private final BackendGuard checkout;
+    private final BackendGuard admin;
+    private final BackendGuard catalogo;
+
+    public BackendGuards(Environment env) {
+        this.auth = crear(env, "auth", 50);
+        this.checkout = crear(env, "checkout", 20);
+        this.admin = crear(env, "admin", 10);
+        this.catalogo = crear(env, "catalogo", 10);
+    }
+
+    public BackendGuard auth() {
+        return auth;
+    }
+
+    public BackendGuard checkout() {
+        return checkout;
+    }
+
+    public BackendGuard admin() {
+        return admin;
+    }
+
+    public BackendGuard catalogo() {
+        return catalogo;
+    }
+
+    public List<BackendGuard> todos() {
+        return List.of(auth, checkout, admin, catalogo);
+    }
+
+    private static BackendGuard crear(Environment env, String grupo, int maxConcurrentesPorDefecto) {
+        String prefijo = "api.resilience." + grupo + ".";
+
+        CircuitBreaker circuitBreaker = new CircuitBreaker(grupo,
+                env.getProperty(prefijo + "failure-threshold", Integer.class, 5),
+                env.getProperty(prefijo + "open-duration", Duration.class, Duration.ofSeconds(30)),
+                env.getProperty(prefijo + "half-open-probes", Integer.class, 1));
+
+        return new BackendGuard(grupo,
+                env.getProperty(prefijo + "max-concurrent", Integer.class, maxConcurrentesPorDefecto),
+                env.getProperty(prefijo + "bulkhead-wait", Duration.class, Duration.ofMillis(100)),
+                circuitBreaker);
+    }
+}
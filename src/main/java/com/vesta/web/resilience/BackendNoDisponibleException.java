@@ -0,0 +1,16 @@
+package com.vesta.web.resilience;
+
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ * Rechazo inmediato de una llamada al backend (circuito abierto o bulkhead lleno)
+ *
+ * Extiende ResourceAccessException para que ApiService la trate como un error de conexión
+ * y devuelva el mismo mensaje amigable sin código adicional.
+ */
+public class BackendNoDisponibleException extends ResourceAccessException {
+
+    public BackendNoDisponibleException(String message) {
+        super(message);
+    }
+}
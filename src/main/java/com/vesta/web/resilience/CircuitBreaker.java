@@ -0,0 +1,114 @@
+package com.vesta.web.resilience;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Circuit breaker por fallos consecutivos
+ *
+ * CERRADO: deja pasar todo. Tras {@code umbralFallos} fallos seguidos pasa a ABIERTO y rechaza
+ * sin llamar al backend durante {@code duracionApertura}. Después pasa a SEMIABIERTO y deja pasar
+ * como mucho {@code sondasMax} llamadas de prueba: si una sale bien se cierra, si falla se vuelve a abrir.
+ */
+public class CircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum Estado {
+        CERRADO, ABIERTO, SEMIABIERTO
+    }
+
+    private final String nombre;
+    private final int umbralFallos;
+    private final long duracionAperturaNanos;
+    private final int sondasMax;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private Estado estado = Estado.CERRADO;
+    private int fallosConsecutivos;
+    private int sondasEnCurso;
+    private long abiertoHasta;
+
+    public CircuitBreaker(String nombre, int umbralFallos, Duration duracionApertura, int sondasMax) {
+        this.nombre = nombre;
+        this.umbralFallos = Math.max(1, umbralFallos);
+        this.duracionAperturaNanos = duracionApertura.toNanos();
+        this.sondasMax = Math.max(1, sondasMax);
+    }
+
+    /**
+     * Indica si la llamada puede hacerse. Si devuelve true hay que informar luego con exito() o fallo().
+     */
+    public boolean permitir() {
+        lock.lock();
+        try {
+            switch (estado) {
+                case CERRADO:
+                    return true;
+                case ABIERTO:
+                    if (System.nanoTime() - abiertoHasta < 0) {
+                        return false;
+                    }
+                    logger.info("Circuito {} en SEMIABIERTO: probando el backend", nombre);
+                    estado = Estado.SEMIABIERTO;
+                    sondasEnCurso = 1;
+                    return true;
+                default:
+                    if (sondasEnCurso >= sondasMax) {
+                        return false;
+                    }
+                    sondasEnCurso++;
+                    return true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void exito() {
+        lock.lock();
+        try {
+            if (estado == Estado.SEMIABIERTO) {
+                logger.info("Circuito {} CERRADO: el backend responde de nuevo", nombre);
+                estado = Estado.CERRADO;
+                sondasEnCurso = 0;
+            }
+            fallosConsecutivos = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void fallo() {
+        lock.lock();
+        try {
+            if (estado == Estado.SEMIABIERTO) {
+                abrir();
+            } else if (estado == Estado.CERRADO && ++fallosConsecutivos >= umbralFallos) {
+                abrir();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Estado getEstado() {
+        lock.lock();
+        try {
+            return estado;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void abrir() {
+        logger.warn("Circuito {} ABIERTO durante {}ms", nombre, Duration.ofNanos(duracionAperturaNanos).toMillis());
+        estado = Estado.ABIERTO;
+        abiertoHasta = System.nanoTime() + duracionAperturaNanos;
+        fallosConsecutivos = 0;
+        sondasEnCurso = 0;
+    }
+}
@@ -0,0 +1,92 @@
+package com.vesta.web.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.vesta.web.dto.ApiError;
+import com.vesta.web.dto.ApiResponseWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+/**
+ * Decodificación centralizada de los errores de la API
+ *
+ * Usa el ObjectMapper de Spring con un ObjectReader ya resuelto para ApiResponseWrapper,
+ * lee el body de error una sola vez y traduce cualquier excepción de RestTemplate al
+ * RuntimeException con el mensaje amigable que muestran los controladores.
+ */
+@Component
+public class ApiErrorDecoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ApiErrorDecoder.class);
+
+    static final String ERROR_SERVIDOR = "Error del servidor. Por favor, intente más tarde.";
+    static final String ERROR_CONEXION = "No se pudo conectar con el servidor. Verifique su conexión.";
+
+    private final ObjectReader wrapperReader;
+
+    public ApiErrorDecoder(ObjectMapper objectMapper) {
+        this.wrapperReader = objectMapper.readerFor(ApiResponseWrapper.class);
+    }
+
+    /**
+     * Extrae el mensaje del JSON de error {"success": false, "message": "...", "data": ...}
+     */
+    public ApiError decode(HttpStatusCodeException e) {
+        int status = e.getStatusCode().value();
+        byte[] body = e.getResponseBodyAsByteArray();
+
+        if (body.length > 0) {
+            try {
+                ApiResponseWrapper<?> errorResponse = wrapperReader.readValue(body);
+                if (errorResponse != null && errorResponse.getMessage() != null) {
+                    return new ApiError(status, errorResponse.getMessage(), true);
+                }
+            } catch (IOException parseException) {
+                // Si falla el parseo, devolver el cuerpo tal cual
+                logger.warn("No se pudo parsear el error de la API: {}", parseException.getMessage());
+            }
+        }
+
+        // Si no se pudo extraer un mensaje limpio, devolver algo útil
+        return new ApiError(status, "Error " + e.getStatusCode() + ": " + new String(body, StandardCharsets.UTF_8),
+                false);
+    }
+
+    /**
+     * Traduce la excepción de una llamada a la API y deja constancia en el log.
+     * La original queda como causa (la cola de checkout la usa para decidir si reintenta).
+     *
+     * @param operacion         nombre corto para el log (login, registro, checkout...)
+     * @param mensajeInesperado mensaje para errores que no son HTTP ni de conexión
+     *                          (solo se evalúa en ese caso)
+     */
+    public RuntimeException traducir(Exception e, String operacion, Function<Exception, String> mensajeInesperado) {
+        if (e instanceof HttpClientErrorException clientError) {
+            ApiError error = decode(clientError);
+            logger.error("Error de cliente en {}: {} - {}", operacion, error.getStatus(), error.getMessage());
+            return new RuntimeException(error.getMessage(), e);
+        }
+        if (e instanceof HttpServerErrorException serverError) {
+            logger.error("Error de servidor en {}: {}", operacion, serverError.getStatusCode());
+            if (logger.isDebugEnabled()) {
+                logger.debug("Body del error de servidor en {}: {}", operacion, serverError.getResponseBodyAsString());
+            }
+            return new RuntimeException(ERROR_SERVIDOR, e);
+        }
+        if (e instanceof ResourceAccessException) {
+            logger.error("Error de conexión con la API en {}: {}", operacion, e.getMessage());
+            return new RuntimeException(ERROR_CONEXION, e);
+        }
+        logger.error("Error inesperado en {}: {}", operacion, e.getMessage(), e);
+        return new RuntimeException(mensajeInesperado.apply(e), e);
+    }
+}
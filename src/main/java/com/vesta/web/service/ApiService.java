@@ -1,13 +1,20 @@
 package com.vesta.web.service;
 
+import com.vesta.web.cache.SingleFlight;
+import com.vesta.web.cache.TtlCache;
 import com.vesta.web.dto.AuthResponseDTO;
 import com.vesta.web.dto.ApiResponseWrapper;
 import com.vesta.web.dto.CartItem;
 import com.vesta.web.dto.LoginDTO;
 import com.vesta.web.dto.RegisterDTO;
+import com.vesta.web.metrics.ApiMetrics;
+import com.vesta.web.resilience.BackendGuard;
+import com.vesta.web.resilience.BackendGuards;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
@@ -15,14 +22,19 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.HttpServerErrorException;
-import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -33,12 +45,76 @@ public class ApiService {
 
     private static final Logger logger = LoggerFactory.getLogger(ApiService.class);
 
+    // Tipos genéricos resueltos una sola vez en lugar de en cada llamada
+    private static final ParameterizedTypeReference<ApiResponseWrapper<AuthResponseDTO>> AUTH_RESPONSE =
+            new ParameterizedTypeReference<>() {
+            };
+    private static final ParameterizedTypeReference<ApiResponseWrapper<String>> STRING_RESPONSE =
+            new ParameterizedTypeReference<>() {
+            };
+    private static final ParameterizedTypeReference<ApiResponseWrapper<Map<String, Object>>> MAP_RESPONSE =
+            new ParameterizedTypeReference<>() {
+            };
+    private static final ParameterizedTypeReference<List<Map<String, Object>>> LISTA_MAPAS =
+            new ParameterizedTypeReference<>() {
+            };
+
     @Autowired
     private RestTemplate restTemplate;
 
+    @Autowired
+    @Qualifier("apiExecutor")
+    private Executor apiExecutor;
+
+    // Circuit breaker y bulkhead por grupo de endpoints (auth, checkout, admin, catálogo)
+    @Autowired
+    private BackendGuards guards;
+
+    @Autowired
+    private ApiErrorDecoder apiErrors;
+
+    // Timer vesta.backend.requests por operación, resultado y status
+    @Autowired
+    private ApiMetrics metrics;
+
     @Value("${api.url}")
     private String apiUrl;
 
+    // Endpoint de renovación del JWT (vacío = la API no lo ofrece y la sesión termina al caducar el token)
+    @Value("${api.jwt.refresh-path:}")
+    private String refreshPath;
+
+    @Value("${api.cache.ttl.ordenes:30s}")
+    private Duration ttlOrdenes;
+
+    @Value("${api.cache.ttl.solicitudes:60s}")
+    private Duration ttlSolicitudes;
+
+    @Value("${api.cache.ttl.siniestros:15s}")
+    private Duration ttlSiniestros;
+
+    private final TtlCache<String, List<Map<String, Object>>> adminListCache;
+
+    // Lecturas GET idénticas (misma URL y mismo token) que coinciden en el tiempo comparten una sola llamada
+    private final SingleFlight<String, List<Map<String, Object>>> listasEnCurso = new SingleFlight<>("admin-lists");
+    // Por path: sube con cada invalidación, y una lectura empezada antes no guarda su resultado
+    private final ConcurrentHashMap<String, AtomicLong> generacionesListas = new ConcurrentHashMap<>();
+    private final SingleFlight<String, byte[]> jsonEnCurso = new SingleFlight<>("catalogo");
+    // Varias pestañas de la misma sesión que detectan a la vez el token a punto de caducar lo renuevan una sola vez
+    private final SingleFlight<String, AuthResponseDTO> renovacionesEnCurso = new SingleFlight<>("token-refresh");
+
+    public ApiService(@Value("${api.cache.max-entries:200}") int cacheMaxEntries) {
+        this.adminListCache = new TtlCache<>("admin-lists", cacheMaxEntries);
+    }
+
+    @PostConstruct
+    void registrarMetricas() {
+        metrics.registrar(adminListCache);
+        metrics.registrar(listasEnCurso);
+        metrics.registrar(jsonEnCurso);
+        metrics.registrar(renovacionesEnCurso);
+    }
+
     // === AUTENTICACIÓN ===
 
     public AuthResponseDTO login(String email, String password) {
@@ -51,12 +127,12 @@ public class ApiService {
             logger.debug("Intentando login para: {}", email);
 
             // La API devuelve ApiResponse<AuthResponseDTO>, no directamente AuthResponseDTO
-            ResponseEntity<ApiResponseWrapper<AuthResponseDTO>> response = restTemplate.exchange(
+            ResponseEntity<ApiResponseWrapper<AuthResponseDTO>> response = llamar("login", guards.auth(),
+                    () -> restTemplate.exchange(
                     url,
                     HttpMethod.POST,
                     new HttpEntity<>(request),
-                    new ParameterizedTypeReference<ApiResponseWrapper<AuthResponseDTO>>() {
-                    });
+                    AUTH_RESPONSE));
 
             logger.info("Login exitoso para: {}", email);
 
@@ -67,43 +143,54 @@ public class ApiService {
                 throw new RuntimeException("Respuesta de la API vacía o inválida");
             }
 
-        } catch (HttpClientErrorException e) {
-            logger.error("Error de cliente en login para {}: {}", email, e.getResponseBodyAsString());
-            throw new RuntimeException(extractErrorMessage(e));
-        } catch (HttpServerErrorException e) {
-            logger.error("Error de servidor en login: {} - {}", e.getStatusCode(), e.getResponseBodyAsString());
-            throw new RuntimeException("Error del servidor. Por favor, intente más tarde.");
-        } catch (ResourceAccessException e) {
-            logger.error("Error de conexión con la API: {}", e.getMessage());
-            throw new RuntimeException("No se pudo conectar con el servidor. Verifique su conexión.");
         } catch (Exception e) {
-            logger.error("Error inesperado en login: {}", e.getMessage(), e);
-            throw new RuntimeException("Error en login: " + e.getMessage());
+            throw apiErrors.traducir(e, "login", ex -> "Error en login: " + ex.getMessage());
         }
     }
 
+    public boolean isRenovacionTokenHabilitada() {
+        return refreshPath != null && !refreshPath.isBlank();
+    }
+
+    /**
+     * Pide a la API un token nuevo a partir del actual (todavía vigente).
+     * La respuesta tiene el mismo formato que la del login.
+     */
+    public AuthResponseDTO renovarToken(String token) {
+        if (!isRenovacionTokenHabilitada()) {
+            throw new IllegalStateException("La renovación de token no está configurada (api.jwt.refresh-path)");
+        }
+        return renovacionesEnCurso.execute(token, () -> {
+            try {
+                ResponseEntity<ApiResponseWrapper<AuthResponseDTO>> response = llamar("refresh", guards.auth(),
+                        () -> restTemplate.exchange(
+                        apiUrl + refreshPath,
+                        HttpMethod.POST,
+                        new HttpEntity<>(getHeaders(token)),
+                        AUTH_RESPONSE));
+
+                if (response.getBody() != null && response.getBody().getData() != null) {
+                    return response.getBody().getData();
+                }
+                throw new RuntimeException("Respuesta de la API vacía o inválida");
+
+            } catch (Exception e) {
+                throw apiErrors.traducir(e, "refresh", ex -> "Error al renovar la sesión: " + ex.getMessage());
+            }
+        });
+    }
+
     public void registrar(RegisterDTO registro) {
         try {
             String url = apiUrl + "/auth/register";
             logger.debug("Intentando registrar usuario: {}", registro.getCorreoElectronico());
 
-            restTemplate.postForEntity(url, registro, String.class);
+            llamar("registro", guards.auth(), () -> restTemplate.postForEntity(url, registro, String.class));
 
             logger.info("Registro exitoso para: {}", registro.getCorreoElectronico());
 
-        } catch (HttpClientErrorException e) {
-            logger.error("Error de cliente en registro para {}: {}", registro.getCorreoElectronico(),
-                    e.getResponseBodyAsString());
-            throw new RuntimeException(extractErrorMessage(e));
-        } catch (HttpServerErrorException e) {
-            logger.error("Error de servidor en registro: {} - {}", e.getStatusCode(), e.getResponseBodyAsString());
-            throw new RuntimeException("Error del servidor. Por favor, intente más tarde.");
-        } catch (ResourceAccessException e) {
-            logger.error("Error de conexión con la API: {}", e.getMessage());
-            throw new RuntimeException("No se pudo conectar con el servidor. Verifique su conexión.");
         } catch (Exception e) {
-            logger.error("Error inesperado en registro: {}", e.getMessage(), e);
-            throw new RuntimeException("Error en registro: " + e.getMessage());
+            throw apiErrors.traducir(e, "registro", ex -> "Error en registro: " + ex.getMessage());
         }
     }
 
@@ -118,12 +205,12 @@ public class ApiService {
             Map<String, String> request = new HashMap<>();
             request.put("email", email);
 
-            ResponseEntity<ApiResponseWrapper<String>> response = restTemplate.exchange(
+            ResponseEntity<ApiResponseWrapper<String>> response = llamar("forgot-password", guards.auth(),
+                    () -> restTemplate.exchange(
                     url,
                     HttpMethod.POST,
                     new HttpEntity<>(request),
-                    new ParameterizedTypeReference<ApiResponseWrapper<String>>() {
-                    });
+                    STRING_RESPONSE));
 
             logger.info("Solicitud de recuperación enviada para: {}", email);
 
@@ -133,19 +220,9 @@ public class ApiService {
                 return "Se ha enviado un código de verificación a tu correo electrónico";
             }
 
-        } catch (HttpClientErrorException e) {
-            logger.error("Error de cliente en forgot-password para {}: {}", email, e.getResponseBodyAsString());
-            throw new RuntimeException(extractErrorMessage(e));
-        } catch (HttpServerErrorException e) {
-            logger.error("Error de servidor en forgot-password: {} - {}", e.getStatusCode(),
-                    e.getResponseBodyAsString());
-            throw new RuntimeException("Error del servidor. Por favor, intente más tarde.");
-        } catch (ResourceAccessException e) {
-            logger.error("Error de conexión con la API: {}", e.getMessage());
-            throw new RuntimeException("No se pudo conectar con el servidor. Verifique su conexión.");
         } catch (Exception e) {
-            logger.error("Error inesperado en forgot-password: {}", e.getMessage(), e);
-            throw new RuntimeException("Error al solicitar recuperación de contraseña: " + e.getMessage());
+            throw apiErrors.traducir(e, "forgot-password",
+                    ex -> "Error al solicitar recuperación de contraseña: " + ex.getMessage());
         }
     }
 
@@ -161,12 +238,12 @@ public class ApiService {
             request.put("email", email);
             request.put("method", method);
 
-            ResponseEntity<ApiResponseWrapper<String>> response = restTemplate.exchange(
+            ResponseEntity<ApiResponseWrapper<String>> response = llamar("forgot-password", guards.auth(),
+                    () -> restTemplate.exchange(
                     url,
                     HttpMethod.POST,
                     new HttpEntity<>(request),
-                    new ParameterizedTypeReference<ApiResponseWrapper<String>>() {
-                    });
+                    STRING_RESPONSE));
 
             logger.info("Solicitud de recuperación enviada para: {} por {}", email, method);
 
@@ -176,19 +253,8 @@ public class ApiService {
                 return "Se ha enviado un código de verificación";
             }
 
-        } catch (HttpClientErrorException e) {
-            logger.error("Error de cliente en forgot-password para {}: {}", email, e.getResponseBodyAsString());
-            throw new RuntimeException(extractErrorMessage(e));
-        } catch (HttpServerErrorException e) {
-            logger.error("Error de servidor en forgot-password: {} - {}", e.getStatusCode(),
-                    e.getResponseBodyAsString());
-            throw new RuntimeException("Error del servidor. Por favor, intente más tarde.");
-        } catch (ResourceAccessException e) {
-            logger.error("Error de conexión con la API: {}", e.getMessage());
-            throw new RuntimeException("No se pudo conectar con el servidor. Verifique su conexión.");
         } catch (Exception e) {
-            logger.error("Error inesperado en forgot-password: {}", e.getMessage(), e);
-            throw new RuntimeException("Error al solicitar recuperación de contraseña");
+            throw apiErrors.traducir(e, "forgot-password", ex -> "Error al solicitar recuperación de contraseña");
         }
     }
 
@@ -203,21 +269,18 @@ public class ApiService {
             Map<String, String> request = new HashMap<>();
             request.put("email", email);
 
-            ResponseEntity<ApiResponseWrapper<Map<String, Object>>> response = restTemplate.exchange(
+            ResponseEntity<ApiResponseWrapper<Map<String, Object>>> response = llamar("recovery-methods", guards.auth(),
+                    () -> restTemplate.exchange(
                     url,
                     HttpMethod.POST,
                     new HttpEntity<>(request),
-                    new ParameterizedTypeReference<ApiResponseWrapper<Map<String, Object>>>() {
-                    });
+                    MAP_RESPONSE));
 
             return response.getBody().getData();
 
-        } catch (HttpClientErrorException e) {
-            logger.error("Error verificando métodos: {}", e.getResponseBodyAsString());
-            throw new RuntimeException(extractErrorMessage(e));
         } catch (Exception e) {
-            logger.error("Error inesperado verificando métodos: {}", e.getMessage(), e);
-            throw new RuntimeException("Error al verificar métodos de recuperación");
+            throw apiErrors.traducir(e, "métodos de recuperación",
+                    ex -> "Error al verificar métodos de recuperación");
         }
     }
 
@@ -232,12 +295,12 @@ public class ApiService {
             Map<String, String> request = new HashMap<>();
             request.put("email", email);
 
-            ResponseEntity<ApiResponseWrapper<String>> response = restTemplate.exchange(
+            ResponseEntity<ApiResponseWrapper<String>> response = llamar("resend-confirmation", guards.auth(),
+                    () -> restTemplate.exchange(
                     url,
                     HttpMethod.POST,
                     new HttpEntity<>(request),
-                    new ParameterizedTypeReference<ApiResponseWrapper<String>>() {
-                    });
+                    STRING_RESPONSE));
 
             if (response.getBody() != null && response.getBody().getMessage() != null) {
                 return response.getBody().getMessage();
@@ -245,12 +308,8 @@ public class ApiService {
                 return "Correo de confirmación reenviado";
             }
 
-        } catch (HttpClientErrorException e) {
-            logger.error("Error de cliente en reenvío: {}", e.getResponseBodyAsString());
-            throw new RuntimeException(extractErrorMessage(e));
         } catch (Exception e) {
-            logger.error("Error inesperado en reenvío: {}", e.getMessage(), e);
-            throw new RuntimeException("Error al reenviar correo");
+            throw apiErrors.traducir(e, "reenvío de confirmación", ex -> "Error al reenviar correo");
         }
     }
 
@@ -266,12 +325,12 @@ public class ApiService {
             request.put("token", token);
             request.put("newPassword", newPassword);
 
-            ResponseEntity<ApiResponseWrapper<String>> response = restTemplate.exchange(
+            ResponseEntity<ApiResponseWrapper<String>> response = llamar("reset-password", guards.auth(),
+                    () -> restTemplate.exchange(
                     url,
                     HttpMethod.POST,
                     new HttpEntity<>(request),
-                    new ParameterizedTypeReference<ApiResponseWrapper<String>>() {
-                    });
+                    STRING_RESPONSE));
 
             logger.info("Contraseña reseteada exitosamente");
 
@@ -281,27 +340,39 @@ public class ApiService {
                 return "Contraseña actualizada exitosamente";
             }
 
-        } catch (HttpClientErrorException e) {
-            logger.error("Error de cliente en reset-password: {}", e.getResponseBodyAsString());
-            throw new RuntimeException(extractErrorMessage(e));
-        } catch (HttpServerErrorException e) {
-            logger.error("Error de servidor en reset-password: {} - {}", e.getStatusCode(),
-                    e.getResponseBodyAsString());
-            throw new RuntimeException("Error del servidor. Por favor, intente más tarde.");
-        } catch (ResourceAccessException e) {
-            logger.error("Error de conexión con la API: {}", e.getMessage());
-            throw new RuntimeException("No se pudo conectar con el servidor. Verifique su conexión.");
         } catch (Exception e) {
-            logger.error("Error inesperado en reset-password: {}", e.getMessage(), e);
-            throw new RuntimeException("Error al resetear contraseña: " + e.getMessage());
+            throw apiErrors.traducir(e, "reset-password", ex -> "Error al resetear contraseña: " + ex.getMessage());
         }
     }
 
     // === VENTAS (CLIENTE) ===
 
-    public void realizarCheckout(Long usuarioId, List<CartItem> carrito) {
+    /**
+     * @param claveIdempotencia se envía como cabecera Idempotency-Key para que los reintentos de
+     *                          ColaCheckout no dupliquen el pedido (null: sin cabecera)
+     */
+    public void realizarCheckout(Long usuarioId, List<CartItem> carrito, String claveIdempotencia) {
         String url = apiUrl + "/ordenes/checkout";
+        Map<String, Object> request = construirPeticionCheckout(usuarioId, carrito);
+        HttpHeaders headers = new HttpHeaders();
+        if (claveIdempotencia != null) {
+            headers.set("Idempotency-Key", claveIdempotencia);
+        }
 
+        try {
+            logger.debug("Realizando checkout para usuario: {}", usuarioId);
+            llamar("checkout", guards.checkout(),
+                    () -> restTemplate.postForEntity(url, new HttpEntity<>(request, headers), String.class));
+            logger.info("Checkout exitoso para usuario: {}", usuarioId);
+            invalidarListaAdmin("/ordenes");
+
+        } catch (Exception e) {
+            throw apiErrors.traducir(e, "checkout", ex -> "Error checkout: " + ex.getMessage());
+        }
+    }
+
+    // Visible en el paquete para los benchmarks (src/jmh)
+    static Map<String, Object> construirPeticionCheckout(Long usuarioId, List<CartItem> carrito) {
         Map<String, Object> request = new HashMap<>();
         request.put("usuarioId", usuarioId);
 
@@ -313,112 +384,185 @@ public class ApiService {
         }).collect(Collectors.toList());
 
         request.put("items", items);
+        return request;
+    }
 
-        try {
-            logger.debug("Realizando checkout para usuario: {}", usuarioId);
-            restTemplate.postForEntity(url, request, String.class);
-            logger.info("Checkout exitoso para usuario: {}", usuarioId);
+    // === CATÁLOGO ===
+    // Devuelven el JSON tal cual llega del backend para poder servirlo y cachearlo sin re-serializar
 
-        } catch (HttpClientErrorException e) {
-            logger.error("Error de cliente en checkout: {}", e.getResponseBodyAsString());
-            throw new RuntimeException(extractErrorMessage(e));
-        } catch (HttpServerErrorException e) {
-            logger.error("Error de servidor en checkout: {} - {}", e.getStatusCode(), e.getResponseBodyAsString());
-            throw new RuntimeException("Error del servidor. Por favor, intente más tarde.");
-        } catch (ResourceAccessException e) {
-            logger.error("Error de conexión con la API: {}", e.getMessage());
-            throw new RuntimeException("No se pudo conectar con el servidor. Verifique su conexión.");
-        } catch (Exception e) {
-            logger.error("Error inesperado en checkout: {}", e.getMessage(), e);
-            throw new RuntimeException("Error checkout: " + e.getMessage());
-        }
+    public byte[] obtenerProductosJson(String token) {
+        return leerJson("catalogo", "/productos", token, "catálogo de productos");
+    }
+
+    public byte[] obtenerProductoJson(String token, Long productoId) {
+        return leerJson("producto", "/productos/" + productoId, token, "producto " + productoId);
     }
 
     // === GESTIÓN (ADMIN) ===
 
     public List<Map<String, Object>> obtenerTodasLasOrdenes(String token) {
-        String url = apiUrl + "/ordenes";
-        try {
-            logger.debug("Obteniendo todas las órdenes");
+        return leerListaAdmin("admin.ordenes", "/ordenes", token, ttlOrdenes, "órdenes");
+    }
 
-            ResponseEntity<List<Map<String, Object>>> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.GET,
-                    new HttpEntity<>(getHeaders(token)),
-                    new ParameterizedTypeReference<List<Map<String, Object>>>() {
-                    });
+    public List<Map<String, Object>> obtenerSolicitudesRGPD(String token) {
+        return leerListaAdmin("admin.solicitudes-rgpd", "/derechos/todas", token, ttlSolicitudes, "solicitudes RGPD");
+    }
 
-            return response.getBody();
+    // === NUEVO MÉTODO: OBTENER SINIESTROS ===
+    public List<Map<String, Object>> obtenerSiniestros(String token) {
+        return leerListaAdmin("admin.siniestros", "/siniestros", token, ttlSiniestros, "siniestros");
+    }
+
+    /**
+     * Cambia el estado de un siniestro e invalida el listado cacheado de siniestros
+     */
+    public void actualizarEstadoSiniestro(String token, Long siniestroId, String estado) {
+        String url = apiUrl + "/siniestros/" + siniestroId + "/estado";
+
+        Map<String, String> request = new HashMap<>();
+        request.put("estado", estado);
+
+        try {
+            logger.debug("Actualizando siniestro {} a estado {}", siniestroId, estado);
+            llamar("admin.siniestro-estado", guards.admin(), () -> restTemplate.exchange(url, HttpMethod.PUT,
+                    new HttpEntity<>(request, getHeaders(token)), String.class));
+            logger.info("Siniestro {} actualizado a {}", siniestroId, estado);
 
         } catch (Exception e) {
-            logger.error("Error al obtener órdenes: {}", e.getMessage(), e);
-            return List.of();
+            throw apiErrors.traducir(e, "actualización de siniestro",
+                    ex -> "Error al actualizar el siniestro: " + ex.getMessage());
+        } finally {
+            // Aunque falle, el estado en el backend puede haber cambiado: mejor releer
+            invalidarListaAdmin("/siniestros");
         }
     }
 
-    public List<Map<String, Object>> obtenerSolicitudesRGPD(String token) {
-        String url = apiUrl + "/derechos/todas";
-        try {
-            logger.debug("Obteniendo solicitudes RGPD");
+    /**
+     * Contadores de la caché de listados de admin
+     */
+    public Map<String, Object> estadisticasCacheAdmin() {
+        return adminListCache.stats();
+    }
 
-            ResponseEntity<List<Map<String, Object>>> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.GET,
-                    new HttpEntity<>(getHeaders(token)),
-                    new ParameterizedTypeReference<List<Map<String, Object>>>() {
-                    });
+    /**
+     * Estado de los circuit breakers y bulkheads
+     */
+    public List<Map<String, Object>> estadisticasBackend() {
+        return guards.todos().stream().map(g -> g.stats()).collect(Collectors.toList());
+    }
 
-            return response.getBody();
+    /**
+     * Contadores de llamadas agrupadas (single-flight)
+     */
+    public List<Map<String, Object>> estadisticasSingleFlight() {
+        return List.of(listasEnCurso.stats(), jsonEnCurso.stats(), renovacionesEnCurso.stats());
+    }
 
-        } catch (Exception e) {
-            logger.error("Error al obtener solicitudes RGPD: {}", e.getMessage(), e);
-            return List.of();
+    /**
+     * Lectura con caché (read-through). La clave incluye el token, así que cada sesión
+     * solo ve lo que su propio token puede leer. Los errores no se cachean.
+     */
+    private List<Map<String, Object>> leerListaAdmin(String operacion, String path, String token, Duration ttl,
+                                                     String recurso) {
+        String clave = path + "|" + token;
+        List<Map<String, Object>> cacheada = adminListCache.get(clave);
+        if (cacheada != null) {
+            logger.debug("Obteniendo {} (caché)", recurso);
+            return cacheada;
         }
+
+        return listasEnCurso.execute(clave, () -> {
+            AtomicLong generacion = generacionesListas.computeIfAbsent(path, p -> new AtomicLong());
+            long leidaEn = generacion.get();
+            try {
+                logger.debug("Obteniendo {}", recurso);
+
+                ResponseEntity<List<Map<String, Object>>> response = llamar(operacion, guards.admin(),
+                        () -> restTemplate.exchange(
+                        apiUrl + path,
+                        HttpMethod.GET,
+                        new HttpEntity<>(getHeaders(token)),
+                        LISTA_MAPAS));
+
+                List<Map<String, Object>> lista = response.getBody() != null
+                        ? Collections.unmodifiableList(response.getBody())
+                        : List.of();
+                if (generacion.get() == leidaEn) {
+                    adminListCache.put(clave, lista, ttl);
+                    // Una escritura entre la comprobación y el put: se quita lo recién guardado
+                    if (generacion.get() != leidaEn) {
+                        adminListCache.invalidate(clave);
+                    }
+                }
+                return lista;
+
+            } catch (Exception e) {
+                logger.error("Error al obtener {}: {}", recurso, e.getMessage(), e);
+                return List.of();
+            }
+        });
     }
 
-    // === NUEVO MÉTODO: OBTENER SINIESTROS ===
-    public List<Map<String, Object>> obtenerSiniestros(String token) {
-        String url = apiUrl + "/siniestros";
+    private byte[] leerJson(String operacion, String path, String token, String recurso) {
+        return jsonEnCurso.execute(path + "|" + token, () -> leerJsonDelBackend(operacion, path, token, recurso));
+    }
+
+    private byte[] leerJsonDelBackend(String operacion, String path, String token, String recurso) {
         try {
-            logger.debug("Obteniendo siniestros");
+            logger.debug("Obteniendo {}", recurso);
 
-            ResponseEntity<List<Map<String, Object>>> response = restTemplate.exchange(
-                    url,
+            ResponseEntity<byte[]> response = llamar(operacion, guards.catalogo(), () -> restTemplate.exchange(
+                    apiUrl + path,
                     HttpMethod.GET,
                     new HttpEntity<>(getHeaders(token)),
-                    new ParameterizedTypeReference<List<Map<String, Object>>>() {
-                    });
+                    byte[].class));
 
-            return response.getBody();
+            return response.getBody() != null ? response.getBody() : new byte[0];
 
         } catch (Exception e) {
-            logger.error("Error al obtener siniestros: {}", e.getMessage(), e);
-            return List.of();
+            throw apiErrors.traducir(e, recurso, ex -> "Error al obtener " + recurso + ": " + ex.getMessage());
         }
     }
 
-    // === UTILIDADES ===
+    private void invalidarListaAdmin(String path) {
+        String prefijo = path + "|";
+        generacionesListas.computeIfAbsent(path, p -> new AtomicLong()).incrementAndGet();
+        listasEnCurso.olvidarSi(clave -> clave.startsWith(prefijo));
+        adminListCache.invalidateIf(clave -> clave.startsWith(prefijo));
+    }
+
+    // === GESTIÓN (ADMIN) - VARIANTES ASÍNCRONAS ===
+    // Permiten lanzar las tres consultas del dashboard en paralelo.
+    // Igual que las versiones síncronas, ante error del backend devuelven lista vacía. Solo completan con
+    // excepción si el ejecutor está saturado, para que el dashboard marque la pestaña como no disponible.
+
+    public CompletableFuture<List<Map<String, Object>>> obtenerTodasLasOrdenesAsync(String token) {
+        return enSegundoPlano(() -> obtenerTodasLasOrdenes(token), "órdenes");
+    }
+
+    public CompletableFuture<List<Map<String, Object>>> obtenerSolicitudesRGPDAsync(String token) {
+        return enSegundoPlano(() -> obtenerSolicitudesRGPD(token), "solicitudes RGPD");
+    }
 
-    private String extractErrorMessage(HttpClientErrorException e) {
-        String responseBody = e.getResponseBodyAsString();
-        logger.error("🔴 Error Raw Body: {}", responseBody); // DIAGNÓSTICO
+    public CompletableFuture<List<Map<String, Object>>> obtenerSiniestrosAsync(String token) {
+        return enSegundoPlano(() -> obtenerSiniestros(token), "siniestros");
+    }
 
+    private CompletableFuture<List<Map<String, Object>>> enSegundoPlano(
+            Supplier<List<Map<String, Object>>> consulta, String recurso) {
         try {
-            // Intentar parsear el JSON de error
-            // La estructura es {"status": "error", "message": "...", "data": ...}
-            com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-            ApiResponseWrapper<?> errorResponse = mapper.readValue(e.getResponseBodyAsString(),
-                    ApiResponseWrapper.class);
-            if (errorResponse != null && errorResponse.getMessage() != null) {
-                return errorResponse.getMessage();
-            }
-        } catch (Exception parseException) {
-            // Si falla el parseo, devolver el mensaje original o el cuerpo
-            logger.warn("No se pudo parsear el error de la API: {}", parseException.getMessage());
+            return CompletableFuture.supplyAsync(consulta, apiExecutor);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Ejecutor de API saturado, no se consultan {}", recurso);
+            return CompletableFuture.failedFuture(e);
         }
+    }
+
+    // === UTILIDADES ===
 
-        // Si no se pudo extraer un mensaje limpio, devolver algo útil
-        return "Error " + e.getStatusCode() + ": " + e.getResponseBodyAsString();
+    // Todas las llamadas al backend pasan por su guard (circuit breaker + bulkhead) y quedan medidas
+    private <T> T llamar(String operacion, BackendGuard guard, Supplier<T> llamada) {
+        return metrics.medir(operacion, () -> guard.execute(llamada));
     }
 
     private HttpHeaders getHeaders(String token) {
@@ -0,0 +1,77 @@
+package com.vesta.web.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.vesta.web.imagenes.VariantesImagen;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * HTML precalculado de las tarjetas del marketplace
+ *
+ * El fragmento {@code fragments/producto-cards :: cards} se procesa una sola vez por versión
+ * del catálogo y se reutiliza en todas las peticiones hasta que el catálogo cambia.
+ */
+@Service
+public class CatalogoFragmentos {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogoFragmentos.class);
+
+    public static final Map<String, String> IMAGENES_POR_CATEGORIA = Map.of(
+            "Viaje", "/images/productos/viaje.png",
+            "Tecnología", "/images/productos/tecnologia.png",
+            "Entretenimiento", "/images/productos/Entretenimiento.jpg",
+            "Movilidad", "/images/productos/movilidad.png",
+            "Mascotas", "/images/productos/mascotas.png");
+
+    public static final String IMAGEN_POR_DEFECTO = "/images/productos/viaje.png";
+
+    @Autowired
+    private ITemplateEngine templateEngine;
+
+    @Autowired
+    private VariantesImagen variantesImagen;
+
+    // Con la caché de Thymeleaf desactivada (dev) se re-renderiza siempre para ver los cambios en la plantilla
+    @Value("${spring.thymeleaf.cache:true}")
+    private boolean plantillasCacheadas;
+
+    private volatile Tarjetas tarjetas;
+
+    public String tarjetas(CatalogoService.Catalogo catalogo) {
+        Tarjetas actuales = tarjetas;
+        if (plantillasCacheadas && actuales != null && actuales.version == catalogo.getVersion()) {
+            return actuales.html;
+        }
+
+        Context context = new Context();
+        context.setVariable("productos", catalogo.getProductos());
+        context.setVariable("imagenesPorCategoria", IMAGENES_POR_CATEGORIA);
+        context.setVariable("imagenPorDefecto", IMAGEN_POR_DEFECTO);
+        // srcset con las variantes por ancho de las imágenes locales
+        context.setVariable("imagenes", variantesImagen);
+
+        String html = templateEngine.process("fragments/producto-cards", Set.of("cards"), context);
+        logger.debug("Tarjetas del catálogo renderizadas para la versión {}", catalogo.getVersion());
+
+        // Si dos peticiones renderizan a la vez, cualquiera de los dos resultados es válido
+        tarjetas = new Tarjetas(catalogo.getVersion(), html);
+        return html;
+    }
+
+    private static final class Tarjetas {
+        private final long version;
+        private final String html;
+
+        Tarjetas(long version, String html) {
+            this.version = version;
+            this.html = html;
+        }
+    }
+}
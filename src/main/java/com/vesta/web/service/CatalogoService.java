@@ -0,0 +1,340 @@
+package com.vesta.web.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vesta.web.cache.TtlCache;
+import com.vesta.web.metrics.ApiMetrics;
+import com.vesta.web.session.SesionUsuario;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Catálogo de productos compartido por todos los usuarios (backend-for-frontend)
+ *
+ * El listado se guarda como una única instantánea en memoria con su ETag. Cuando supera
+ * {@code catalogo.refresh-interval} se sigue sirviendo mientras se refresca en segundo plano
+ * (una sola llamada al backend por intervalo); solo se bloquea si no hay datos o superan
+ * {@code catalogo.max-stale}. El detalle de cada producto se cachea aparte con TTL.
+ *
+ * Como lo cargado se sirve a todos, no se pide con el token de cualquier usuario: se usa el token de
+ * servicio {@code catalogo.service-token} si está configurado. Si no, el del usuario que hace la
+ * petición, pero solo si no está caducado y su rol está en {@code catalogo.roles-carga} (por defecto
+ * USUARIO, para que la vista de un admin no acabe servida a los clientes). Con un token que no vale se
+ * sigue sirviendo lo que haya y se espera a la petición de otro usuario para refrescar.
+ */
+@Service
+public class CatalogoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogoService.class);
+
+    private static final TypeReference<List<Map<String, Object>>> LISTA_PRODUCTOS = new TypeReference<>() {
+    };
+    private static final TypeReference<Map<String, Object>> PRODUCTO = new TypeReference<>() {
+    };
+
+    // El refresco puede salir más tarde, en segundo plano: un token a punto de caducar ya no sirve
+    private static final Duration MARGEN_TOKEN = Duration.ofSeconds(30);
+
+    @Autowired
+    private ApiService apiService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ApiMetrics metrics;
+
+    @Autowired
+    @Qualifier("apiExecutor")
+    private Executor apiExecutor;
+
+    @Value("${catalogo.refresh-interval:60s}")
+    private Duration refreshInterval;
+
+    @Value("${catalogo.max-stale:30m}")
+    private Duration maxStale;
+
+    @Value("${catalogo.detalle.ttl:5m}")
+    private Duration detalleTtl;
+
+    @Value("${catalogo.service-token:}")
+    private String tokenServicio;
+
+    @Value("${catalogo.roles-carga:USUARIO}")
+    private List<String> rolesCarga;
+
+    private final TtlCache<Long, Producto> detalles;
+    private final ReentrantLock cargaLock = new ReentrantLock();
+    private final AtomicBoolean refrescando = new AtomicBoolean();
+    private final AtomicLong versiones = new AtomicLong();
+
+    private volatile Catalogo actual;
+
+    public CatalogoService(@Value("${catalogo.detalle.max-entries:500}") int detalleMaxEntries) {
+        this.detalles = new TtlCache<>("catalogo-detalle", detalleMaxEntries);
+    }
+
+    @PostConstruct
+    void registrarMetricas() {
+        metrics.registrar(detalles);
+    }
+
+    /**
+     * Devuelve el catálogo vigente. El usuario solo importa si hay que ir al backend (ver credencial).
+     */
+    public Catalogo obtenerCatalogo(SesionUsuario usuario) {
+        Catalogo catalogo = actual;
+        long ahora = System.nanoTime();
+
+        if (catalogo != null && catalogo.edad(ahora).compareTo(refreshInterval) < 0) {
+            return catalogo;
+        }
+        String token = credencial(usuario);
+        if (catalogo != null && catalogo.edad(ahora).compareTo(maxStale) < 0) {
+            if (token != null) {
+                refrescarEnSegundoPlano(token);
+            }
+            return catalogo;
+        }
+        if (token == null) {
+            if (catalogo != null) {
+                return catalogo;
+            }
+            throw new RuntimeException("El catálogo no está disponible en este momento.");
+        }
+
+        // Sin datos utilizables: carga síncrona, una sola petición aunque lleguen muchas a la vez
+        cargaLock.lock();
+        try {
+            Catalogo recargado = actual;
+            if (recargado != null && recargado != catalogo) {
+                return recargado;
+            }
+            return cargar(token);
+        } catch (RuntimeException e) {
+            if (catalogo != null) {
+                logger.warn("No se pudo recargar el catálogo, se sirve la versión {}: {}", catalogo.getVersion(),
+                        e.getMessage());
+                return catalogo;
+            }
+            throw e;
+        } finally {
+            cargaLock.unlock();
+        }
+    }
+
+    /**
+     * Devuelve el detalle de un producto. Si el backend falla pero el producto está en el
+     * listado cacheado, se sirve esa entrada.
+     */
+    public Producto obtenerProducto(SesionUsuario usuario, Long productoId) {
+        Producto producto = detalles.get(productoId);
+        if (producto != null) {
+            return producto;
+        }
+
+        String token = credencial(usuario);
+        try {
+            if (token == null) {
+                throw new RuntimeException("El catálogo no está disponible en este momento.");
+            }
+            byte[] json = apiService.obtenerProductoJson(token, productoId);
+            producto = new Producto(leer(json, PRODUCTO), json, etag(json));
+            detalles.put(productoId, producto, detalleTtl);
+            return producto;
+        } catch (RuntimeException e) {
+            Catalogo catalogo = actual;
+            Map<String, Object> enListado = catalogo != null ? catalogo.getPorId().get(productoId) : null;
+            if (enListado == null) {
+                throw e;
+            }
+            logger.warn("Detalle de producto {} no disponible, se usa el del listado: {}", productoId,
+                    e.getMessage());
+            byte[] json = escribir(enListado);
+            return new Producto(enListado, json, etag(json));
+        }
+    }
+
+    /**
+     * Token para cargar datos compartidos: el de servicio, o el del usuario si sigue vigente y su rol
+     * ve el catálogo de los clientes; null si no hay ninguno utilizable
+     */
+    private String credencial(SesionUsuario usuario) {
+        if (!tokenServicio.isBlank()) {
+            return tokenServicio;
+        }
+        if (usuario == null || usuario.getRol() == null
+                || usuario.segundosRestantes() < MARGEN_TOKEN.getSeconds()
+                || rolesCarga.stream().noneMatch(usuario.getRol()::equalsIgnoreCase)) {
+            return null;
+        }
+        return usuario.getToken();
+    }
+
+    private void refrescarEnSegundoPlano(String token) {
+        if (!refrescando.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            apiExecutor.execute(() -> {
+                try {
+                    cargaLock.lock();
+                    try {
+                        cargar(token);
+                    } finally {
+                        cargaLock.unlock();
+                    }
+                } catch (RuntimeException e) {
+                    logger.warn("Error refrescando el catálogo en segundo plano: {}", e.getMessage());
+                } finally {
+                    refrescando.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refrescando.set(false);
+            logger.warn("Ejecutor de API saturado, se pospone el refresco del catálogo");
+        }
+    }
+
+    /**
+     * Debe llamarse con cargaLock tomado
+     */
+    private Catalogo cargar(String token) {
+        byte[] json = apiService.obtenerProductosJson(token);
+        String etag = etag(json);
+        Catalogo anterior = actual;
+
+        // Si el contenido no ha cambiado se conserva la versión (y lo que dependa de ella)
+        long version = anterior != null && anterior.getEtag().equals(etag)
+                ? anterior.getVersion()
+                : versiones.incrementAndGet();
+
+        List<Map<String, Object>> productos = Collections.unmodifiableList(leer(json, LISTA_PRODUCTOS));
+        Map<Long, Map<String, Object>> porId = new LinkedHashMap<>();
+        for (Map<String, Object> producto : productos) {
+            if (producto.get("id") instanceof Number id) {
+                porId.put(id.longValue(), producto);
+            }
+        }
+
+        Catalogo catalogo = new Catalogo(version, productos, Collections.unmodifiableMap(porId), json, etag,
+                System.nanoTime());
+        if (anterior == null || version != anterior.getVersion()) {
+            logger.info("Catálogo cargado: versión {}, {} productos", version, productos.size());
+            detalles.clear();
+        }
+        actual = catalogo;
+        return catalogo;
+    }
+
+    private <T> T leer(byte[] json, TypeReference<T> tipo) {
+        try {
+            return objectMapper.readValue(json, tipo);
+        } catch (IOException e) {
+            throw new RuntimeException("Respuesta de la API vacía o inválida");
+        }
+    }
+
+    private byte[] escribir(Object valor) {
+        try {
+            return objectMapper.writeValueAsBytes(valor);
+        } catch (IOException e) {
+            throw new RuntimeException("No se pudo serializar el producto", e);
+        }
+    }
+
+    private static String etag(byte[] json) {
+        return "\"" + DigestUtils.md5DigestAsHex(json) + "\"";
+    }
+
+    /**
+     * Instantánea inmutable del listado de productos
+     */
+    public static final class Catalogo {
+        private final long version;
+        private final List<Map<String, Object>> productos;
+        private final Map<Long, Map<String, Object>> porId;
+        private final byte[] json;
+        private final String etag;
+        private final long cargadoEn;
+
+        Catalogo(long version, List<Map<String, Object>> productos, Map<Long, Map<String, Object>> porId,
+                byte[] json, String etag, long cargadoEn) {
+            this.version = version;
+            this.productos = productos;
+            this.porId = porId;
+            this.json = json;
+            this.etag = etag;
+            this.cargadoEn = cargadoEn;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public List<Map<String, Object>> getProductos() {
+            return productos;
+        }
+
+        public Map<Long, Map<String, Object>> getPorId() {
+            return porId;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        Duration edad(long ahora) {
+            return Duration.ofNanos(ahora - cargadoEn);
+        }
+    }
+
+    /**
+     * Detalle de un producto tal como lo devuelve la API
+     */
+    public static final class Producto {
+        private final Map<String, Object> datos;
+        private final byte[] json;
+        private final String etag;
+
+        Producto(Map<String, Object> datos, byte[] json, String etag) {
+            this.datos = datos;
+            this.json = json;
+            this.etag = etag;
+        }
+
+        public Map<String, Object> getDatos() {
+            return datos;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.vesta.web.service;
+
+import com.vesta.web.dto.CartItem;
+import com.vesta.web.resilience.BackendNoDisponibleException;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.apache.hc.core5.http.ConnectionRequestTimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.net.http.HttpConnectTimeoutException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cola de pedidos de checkout: el controlador encola y responde al momento, y unos pocos
+ * workers envían los pedidos a /ordenes/checkout
+ *
+ * Cada pedido se identifica por usuario + clave de idempotencia (generada al pintar el carrito):
+ * un doble envío del formulario devuelve el pedido ya encolado en lugar de crear otro, y la misma
+ * clave viaja al backend como Idempotency-Key.
+ *
+ * Mientras no esté confirmado que el backend respeta esa cabecera, solo se reintenta lo que seguro que no
+ * llegó a procesarse: fallos al conectar, circuito abierto o bulkhead lleno y 429, con backoff exponencial
+ * (con jitter). Un timeout de lectura o un 502/504 no dicen si la orden se creó: el pedido queda
+ * INDETERMINADO y sus items no vuelven al carrito, para no cobrar dos veces. Con
+ * checkout.backend-idempotente=true también se reintentan timeouts y 5xx. El resto de errores falla.
+ * La cola vive en memoria: lo que quede pendiente al parar la aplicación se pierde (queda en el log).
+ */
+@Component
+public class ColaCheckout {
+
+    private static final Logger logger = LoggerFactory.getLogger(ColaCheckout.class);
+
+    public enum Estado {
+        EN_COLA, PROCESANDO, REINTENTANDO, COMPLETADO, FALLIDO,
+        // Se envió pero no hubo respuesta: la orden puede existir o no
+        INDETERMINADO;
+
+        public boolean isTerminado() {
+            return this == COMPLETADO || this == FALLIDO || this == INDETERMINADO;
+        }
+    }
+
+    // Qué hacer con un pedido tras un error del backend
+    private enum Decision {
+        REINTENTAR, FALLAR, INDETERMINADO
+    }
+
+    private final ApiService apiService;
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService planificador;
+    private final ConcurrentHashMap<String, Pedido> pedidos = new ConcurrentHashMap<>();
+
+    private final int maxIntentos;
+    private final long backoffInicialMs;
+    private final long backoffMaximoMs;
+    private final Duration retencion;
+    private final boolean backendIdempotente;
+
+    public ColaCheckout(ApiService apiService,
+            @Value("${checkout.workers:4}") int numWorkers,
+            @Value("${checkout.queue-capacity:500}") int capacidad,
+            @Value("${checkout.max-attempts:5}") int maxIntentos,
+            @Value("${checkout.backoff.initial:1s}") Duration backoffInicial,
+            @Value("${checkout.backoff.max:30s}") Duration backoffMaximo,
+            @Value("${checkout.retention:15m}") Duration retencion,
+            @Value("${checkout.backend-idempotente:false}") boolean backendIdempotente) {
+        this.apiService = apiService;
+        this.maxIntentos = Math.max(1, maxIntentos);
+        this.backoffInicialMs = backoffInicial.toMillis();
+        this.backoffMaximoMs = backoffMaximo.toMillis();
+        this.retencion = retencion;
+        this.backendIdempotente = backendIdempotente;
+
+        AtomicInteger hilos = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(numWorkers, numWorkers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidad),
+                r -> new Thread(r, "checkout-" + hilos.incrementAndGet()));
+        this.planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "checkout-reintentos");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        planificador.scheduleWithFixedDelay(this::purgar, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Encola el pedido, o devuelve el que ya existía con la misma clave (doble envío)
+     *
+     * @throws RuntimeException si la cola está llena
+     */
+    public Pedido encolar(Long usuarioId, String clave, List<CartItem> items) {
+        Pedido nuevo = new Pedido(usuarioId, clave, List.copyOf(items));
+        Pedido existente = pedidos.putIfAbsent(nuevo.id, nuevo);
+        if (existente != null) {
+            logger.info("Checkout {} ya encolado, se ignora el reenvío", clave);
+            return existente;
+        }
+        try {
+            workers.execute(() -> procesar(nuevo));
+        } catch (RejectedExecutionException e) {
+            pedidos.remove(nuevo.id, nuevo);
+            logger.warn("Cola de checkout llena ({} pendientes)", workers.getQueue().size());
+            throw new RuntimeException("Hay muchos pedidos en curso. Inténtalo de nuevo en unos segundos.");
+        }
+        logger.info("Checkout {} encolado para usuario {} ({} items)", clave, usuarioId, items.size());
+        return nuevo;
+    }
+
+    /**
+     * Pedido del usuario con esa clave, o null si no existe o ya se purgó
+     */
+    public Pedido buscar(Long usuarioId, String clave) {
+        return pedidos.get(id(usuarioId, clave));
+    }
+
+    /**
+     * Pedidos fallidos del usuario cuyos items aún no han vuelto al carrito
+     */
+    public List<Pedido> porDevolver(Long usuarioId) {
+        return pedidos.values().stream()
+                .filter(p -> p.usuarioId.equals(usuarioId) && p.isPorDevolver())
+                .toList();
+    }
+
+    public int getPendientes() {
+        return workers.getQueue().size();
+    }
+
+    public int getEnCurso() {
+        return workers.getActiveCount();
+    }
+
+    private void procesar(Pedido pedido) {
+        pedido.cambiar(Estado.PROCESANDO, null);
+        int intento = pedido.intentos.incrementAndGet();
+        try {
+            apiService.realizarCheckout(pedido.usuarioId, pedido.items, pedido.clave);
+            pedido.cambiar(Estado.COMPLETADO, null);
+        } catch (RuntimeException e) {
+            Decision decision = decidir(e);
+            if (decision == Decision.REINTENTAR && intento < maxIntentos) {
+                long espera = backoff(intento);
+                logger.warn("Checkout {} falló (intento {}/{}), reintento en {} ms: {}",
+                        pedido.clave, intento, maxIntentos, espera, e.getMessage());
+                pedido.cambiar(Estado.REINTENTANDO, e.getMessage());
+                reintentar(pedido, espera);
+            } else if (decision == Decision.INDETERMINADO) {
+                logger.error("Checkout {} sin respuesta del backend (intento {}), no se reenvía: {}",
+                        pedido.clave, intento, e.getMessage());
+                pedido.cambiar(Estado.INDETERMINADO, e.getMessage());
+            } else {
+                logger.error("Checkout {} fallido tras {} intento(s): {}", pedido.clave, intento, e.getMessage());
+                pedido.cambiar(Estado.FALLIDO, e.getMessage());
+            }
+        }
+    }
+
+    private void reintentar(Pedido pedido, long esperaMs) {
+        planificador.schedule(() -> {
+            try {
+                workers.execute(() -> procesar(pedido));
+            } catch (RejectedExecutionException e) {
+                // Cola llena o parando: se vuelve a intentar más tarde sin gastar un intento
+                if (!workers.isShutdown()) {
+                    reintentar(pedido, backoffMaximoMs);
+                }
+            }
+        }, esperaMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Exponencial con jitter completo: evita que todos los reintentos lleguen a la vez cuando vuelve el backend
+    private long backoff(int intento) {
+        long tope = Math.min(backoffMaximoMs, backoffInicialMs << Math.min(intento - 1, 20));
+        return ThreadLocalRandom.current().nextLong(backoffInicialMs, Math.max(backoffInicialMs, tope) + 1);
+    }
+
+    private Decision decidir(RuntimeException e) {
+        Throwable causa = e instanceof BackendNoDisponibleException || e.getCause() == null ? e : e.getCause();
+        // Circuito abierto o bulkhead lleno: la petición no salió
+        if (causa instanceof BackendNoDisponibleException) {
+            return Decision.REINTENTAR;
+        }
+        // 429: rechazada sin procesar
+        if (causa instanceof HttpClientErrorException clientError) {
+            return clientError.getStatusCode().value() == 429 ? Decision.REINTENTAR : Decision.FALLAR;
+        }
+        if (causa instanceof ResourceAccessException) {
+            if (sinEnviar(causa) || backendIdempotente) {
+                return Decision.REINTENTAR;
+            }
+            return Decision.INDETERMINADO;
+        }
+        if (causa instanceof HttpServerErrorException serverError) {
+            if (backendIdempotente) {
+                return Decision.REINTENTAR;
+            }
+            // 502/504: el proxy no sabe si el backend llegó a crear la orden
+            int status = serverError.getStatusCode().value();
+            return status == 502 || status == 504 ? Decision.INDETERMINADO : Decision.FALLAR;
+        }
+        return Decision.FALLAR;
+    }
+
+    // Errores de conexión: la petición no llegó a escribirse, reenviarla no puede duplicar la orden
+    private static boolean sinEnviar(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ConnectException
+                    || t instanceof ConnectTimeoutException
+                    || t instanceof ConnectionRequestTimeoutException
+                    || t instanceof HttpConnectTimeoutException
+                    || t instanceof UnknownHostException
+                    || t instanceof NoRouteToHostException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Los pedidos terminados se guardan un tiempo para responder al sondeo y detectar reenvíos
+    private void purgar() {
+        Instant limite = Instant.now().minus(retencion);
+        pedidos.values().removeIf(p -> p.estado.isTerminado() && p.actualizado.isBefore(limite));
+    }
+
+    @PreDestroy
+    void parar() throws InterruptedException {
+        planificador.shutdownNow();
+        workers.shutdown();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.warn("Se para la aplicación con {} checkouts sin enviar", workers.shutdownNow().size());
+        }
+        long pendientes = pedidos.values().stream().filter(p -> !p.estado.isTerminado()).count();
+        if (pendientes > 0) {
+            logger.warn("{} checkouts quedan sin completar al parar", pendientes);
+        }
+    }
+
+    private static String id(Long usuarioId, String clave) {
+        return usuarioId + ":" + clave;
+    }
+
+    /**
+     * Estado de un pedido encolado
+     */
+    public static final class Pedido {
+        private final String id;
+        private final Long usuarioId;
+        private final String clave;
+        private final List<CartItem> items;
+        private final AtomicInteger intentos = new AtomicInteger();
+        private final AtomicBoolean devuelto = new AtomicBoolean();
+
+        private volatile Estado estado = Estado.EN_COLA;
+        private volatile String mensaje;
+        private volatile Instant actualizado = Instant.now();
+
+        Pedido(Long usuarioId, String clave, List<CartItem> items) {
+            this.id = id(usuarioId, clave);
+            this.usuarioId = usuarioId;
+            this.clave = clave;
+            this.items = items;
+        }
+
+        private void cambiar(Estado nuevo, String mensaje) {
+            this.mensaje = mensaje;
+            this.estado = nuevo;
+            this.actualizado = Instant.now();
+        }
+
+        /**
+         * Fallido y con los items aún fuera del carrito
+         */
+        public boolean isPorDevolver() {
+            return estado == Estado.FALLIDO && !devuelto.get();
+        }
+
+        /**
+         * Reserva la devolución de los items al carrito; solo la primera llamada los obtiene.
+         * Si no se llegan a guardar en la sesión hay que llamar a {@link #cancelarDevolucion()}.
+         */
+        public List<CartItem> reservarDevolucion() {
+            return estado == Estado.FALLIDO && devuelto.compareAndSet(false, true) ? items : List.of();
+        }
+
+        public void cancelarDevolucion() {
+            devuelto.set(false);
+        }
+
+        public boolean isDevuelto() {
+            return devuelto.get();
+        }
+
+        public String getClave() {
+            return clave;
+        }
+
+        public Estado getEstado() {
+            return estado;
+        }
+
+        public String getMensaje() {
+            return mensaje;
+        }
+
+        public int getIntentos() {
+            return intentos.get();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.vesta.web.service;
+
+import com.vesta.web.cache.TtlCache;
+import com.vesta.web.metrics.ApiMetrics;
+import com.vesta.web.session.SesionUsuario;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * HTML ya renderizado de los fragmentos comunes (cabecera, banner de cookies)
+ *
+ * Cada fragmento se procesa con un contexto que solo contiene las variables que usa, y esas mismas
+ * variables forman la clave: la cabecera de "Ana" se renderiza una vez y se reutiliza en todas las
+ * páginas y sesiones con ese nombre. Las plantillas lo insertan con {@code th:utext="${#fragmentos...}"}
+ * (ver FragmentosDialect).
+ *
+ * Con la caché de Thymeleaf desactivada (dev) se comprueba la fecha de la plantilla en cada uso y la
+ * entrada se vuelve a renderizar si ha cambiado; con la caché activa Thymeleaf no recarga plantillas.
+ */
+@Service
+public class FragmentosCompartidos {
+
+    private final ITemplateEngine templateEngine;
+    private final ResourceLoader resourceLoader;
+    private final TtlCache<Clave, Renderizado> cache;
+
+    @Autowired
+    private ApiMetrics metrics;
+
+    @Value("${fragmentos.cache.enabled:true}")
+    private boolean habilitado;
+
+    @Value("${fragmentos.cache.ttl:1h}")
+    private Duration ttl;
+
+    @Value("${spring.thymeleaf.cache:true}")
+    private boolean plantillasCacheadas;
+
+    @Value("${spring.thymeleaf.prefix:classpath:/templates/}")
+    private String prefijo;
+
+    @Value("${spring.thymeleaf.suffix:.html}")
+    private String sufijo;
+
+    // @Lazy: el motor de plantillas recibe FragmentosDialect, que depende de este servicio
+    public FragmentosCompartidos(@Lazy ITemplateEngine templateEngine, ResourceLoader resourceLoader,
+            @Value("${fragmentos.cache.max-entries:2000}") int maxEntradas) {
+        this.templateEngine = templateEngine;
+        this.resourceLoader = resourceLoader;
+        this.cache = new TtlCache<>("fragmentos", maxEntradas);
+    }
+
+    @PostConstruct
+    void registrarMetricas() {
+        metrics.registrar(cache);
+    }
+
+    /**
+     * Contenido de la barra superior; depende solo de si hay sesión y del nombre mostrado
+     */
+    public String header(SesionUsuario usuario) {
+        Map<String, Object> variables = new LinkedHashMap<>();
+        variables.put("conectado", usuario != null);
+        variables.put("nombre", usuario != null ? usuario.getNombre() : null);
+        return renderizar("fragments/header", "header-contenido", variables);
+    }
+
+    public String cookieBanner() {
+        return renderizar("fragments/cookie-banner", "cookie-banner", Collections.emptyMap());
+    }
+
+    /**
+     * Fragmento {@code plantilla :: selector} renderizado con estas variables (y solo estas)
+     */
+    public String renderizar(String plantilla, String selector, Map<String, Object> variables) {
+        if (!habilitado) {
+            return procesar(plantilla, selector, variables);
+        }
+        Clave clave = new Clave(plantilla, selector, variables);
+        long modificado = plantillasCacheadas ? 0 : modificado(plantilla);
+        Renderizado renderizado = cache.get(clave);
+        if (renderizado != null && renderizado.modificado == modificado) {
+            return renderizado.html;
+        }
+        // Si dos peticiones renderizan a la vez, cualquiera de los dos resultados es válido
+        String html = procesar(plantilla, selector, variables);
+        cache.put(clave, new Renderizado(html, modificado), ttl);
+        return html;
+    }
+
+    private String procesar(String plantilla, String selector, Map<String, Object> variables) {
+        Context context = new Context();
+        context.setVariables(variables);
+        return templateEngine.process(plantilla, Set.of(selector), context);
+    }
+
+    private long modificado(String plantilla) {
+        try {
+            return resourceLoader.getResource(prefijo + plantilla + sufijo).lastModified();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static final class Clave {
+        private final String plantilla;
+        private final String selector;
+        private final Map<String, Object> variables;
+
+        Clave(String plantilla, String selector, Map<String, Object> variables) {
+            this.plantilla = plantilla;
+            this.selector = selector;
+            // Copia: la clave no puede cambiar una vez dentro de la caché
+            this.variables = Collections.unmodifiableMap(new LinkedHashMap<>(variables));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Clave otra)) {
+                return false;
+            }
+            return plantilla.equals(otra.plantilla) && selector.equals(otra.selector)
+                    && variables.equals(otra.variables);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(plantilla, selector, variables);
+        }
+    }
+
+    private static final class Renderizado {
+        private final String html;
+        private final long modificado;
+
+        Renderizado(String html, long modificado) {
+            this.html = html;
+            this.modificado = modificado;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.vesta.web.session;
+
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Cambios atómicos sobre la SesionUsuario cuando pueden llegar a la vez varias peticiones
+ * de la misma sesión (varias pestañas añadiendo al carrito, renovación del token...)
+ *
+ * Con Spring Session cada petición trabaja sobre su propia copia deserializada del atributo y la
+ * última en guardar pisa a las demás. Aquí el cambio se hace bajo un bloqueo por sesión, sobre la
+ * versión recién leída del almacén, y se guarda en ese momento; la copia de la petición no se
+ * toca para que al terminar no sobrescriba nada.
+ * El bloqueo es local al proceso: con varios nodos evita las carreras entre pestañas servidas por el mismo nodo.
+ */
+@Component
+public class ActualizadorSesion {
+
+    // Bloqueos repartidos por id de sesión (ReentrantLock: no fija el hilo portador con hilos virtuales)
+    private static final int BLOQUEOS = 64;
+
+    private final ReentrantLock[] bloqueos = new ReentrantLock[BLOQUEOS];
+    private final ObjectProvider<SessionRepository<?>> repositorio;
+
+    public ActualizadorSesion(ObjectProvider<SessionRepository<?>> repositorio) {
+        this.repositorio = repositorio;
+        for (int i = 0; i < BLOQUEOS; i++) {
+            bloqueos[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Aplica el cambio a la versión actual de la SesionUsuario y la guarda.
+     * Si el cambio lanza una excepción no se guarda nada.
+     *
+     * @return lo que devuelva el cambio, o null si la sesión ya no tiene usuario (logout en otra pestaña)
+     */
+    public <T> T modificar(HttpSession session, Function<SesionUsuario, T> cambio) {
+        ReentrantLock bloqueo = bloqueos[Math.floorMod(session.getId().hashCode(), BLOQUEOS)];
+        bloqueo.lock();
+        try {
+            SessionRepository<?> almacen = repositorio.getIfAvailable();
+            return almacen != null
+                    ? enAlmacen(almacen, session.getId(), cambio)
+                    : enSesion(session, cambio);
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    private static <S extends Session, T> T enAlmacen(SessionRepository<S> almacen, String id,
+            Function<SesionUsuario, T> cambio) {
+        S sesion = almacen.findById(id);
+        SesionUsuario usuario = sesion != null ? sesion.getAttribute(SesionUsuario.ATRIBUTO) : null;
+        if (usuario == null) {
+            return null;
+        }
+        T resultado = cambio.apply(usuario);
+        sesion.setAttribute(SesionUsuario.ATRIBUTO, usuario);
+        almacen.save(sesion);
+        return resultado;
+    }
+
+    // Sin Spring Session (sesión de Tomcat): todas las peticiones comparten la misma instancia
+    private static <T> T enSesion(HttpSession session, Function<SesionUsuario, T> cambio) {
+        SesionUsuario usuario = SesionUsuario.de(session);
+        if (usuario == null) {
+            return null;
+        }
+        T resultado = cambio.apply(usuario);
+        usuario.guardarEn(session);
+        return resultado;
+    }
+}
@@ -0,0 +1,107 @@
+package com.vesta.web.session;
+
+import com.vesta.web.dto.CartItem;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Carrito indexado por seguroId (en orden de inserción) con el total ya calculado
+ *
+ * Añadir, quitar y consultar el total son O(1); el total se actualiza en cada cambio en lugar de
+ * recorrer los items en cada vista. Los métodos son atómicos sobre la instancia; entre peticiones
+ * los cambios se serializan con ActualizadorSesion.
+ * Hacia fuera solo salen copias de los items: quien los lee no puede descuadrar el total.
+ */
+public class Carrito {
+
+    private final Map<String, CartItem> items = new LinkedHashMap<>();
+    private BigDecimal total = BigDecimal.ZERO;
+
+    /**
+     * Añade una unidad del seguro (el primero con los datos recibidos)
+     *
+     * @return unidades de ese seguro en el carrito tras añadirlo
+     */
+    public int agregar(CartItem item) {
+        return agregar(item, 1);
+    }
+
+    public synchronized int agregar(CartItem item, int unidades) {
+        CartItem actual = items.get(item.getSeguroId());
+        if (actual != null) {
+            actual.setCantidad(actual.getCantidad() + unidades);
+        } else {
+            actual = new CartItem(item.getSeguroId(), item.getNombre(), item.getPrecio(), item.getImagenUrl(),
+                    unidades);
+            items.put(actual.getSeguroId(), actual);
+        }
+        total = total.add(precio(actual).multiply(BigDecimal.valueOf(unidades)));
+        return actual.getCantidad();
+    }
+
+    /**
+     * Quita el seguro con todas sus unidades
+     *
+     * @return false si no estaba en el carrito
+     */
+    public synchronized boolean eliminar(String seguroId) {
+        CartItem quitado = items.remove(seguroId);
+        if (quitado == null) {
+            return false;
+        }
+        total = total.subtract(quitado.getSubtotal());
+        return true;
+    }
+
+    public synchronized void vaciar() {
+        items.clear();
+        total = BigDecimal.ZERO;
+    }
+
+    public synchronized List<CartItem> getItems() {
+        List<CartItem> copia = new ArrayList<>(items.size());
+        for (CartItem item : items.values()) {
+            copia.add(copiar(item));
+        }
+        return copia;
+    }
+
+    public synchronized BigDecimal getTotal() {
+        return total;
+    }
+
+    public synchronized int getTamano() {
+        return items.size();
+    }
+
+    public synchronized boolean isVacio() {
+        return items.isEmpty();
+    }
+
+    // Deserialización: los items llegan ya con su cantidad
+    synchronized void restaurar(CartItem item) {
+        CartItem anterior = items.put(item.getSeguroId(), item);
+        if (anterior != null) {
+            total = total.subtract(anterior.getSubtotal());
+        }
+        total = total.add(item.getSubtotal());
+    }
+
+    synchronized Collection<CartItem> itemsInternos() {
+        return new ArrayList<>(items.values());
+    }
+
+    private static BigDecimal precio(CartItem item) {
+        return item.getPrecio() != null ? item.getPrecio() : BigDecimal.ZERO;
+    }
+
+    private static CartItem copiar(CartItem item) {
+        return new CartItem(item.getSeguroId(), item.getNombre(), item.getPrecio(), item.getImagenUrl(),
+                item.getCantidad());
+    }
+}
@@ -0,0 +1,237 @@
+package com.vesta.web.session;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Cookie con la identidad del usuario (id, rol, nombre) cifrada y autenticada con AES-GCM
+ *
+ * Las páginas públicas y de autenticación ligera la leen en lugar de buscar la sesión en el
+ * almacén. Nunca lleva el token de la API: lo que necesita el token sigue pasando por la sesión.
+ * Se desactiva con {@code identidad.cookie.enabled=false}; entonces todos los métodos no hacen nada.
+ */
+@Component
+public class CookieIdentidad {
+
+    private static final Logger logger = LoggerFactory.getLogger(CookieIdentidad.class);
+
+    private static final byte FORMATO = 1;
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+
+    private final SecureRandom random = new SecureRandom();
+    private final boolean habilitada;
+    private final String nombre;
+    private final Duration duracion;
+    private final boolean segura;
+    private final SecretKey clave;
+
+    public CookieIdentidad(@Value("${identidad.cookie.enabled:false}") boolean habilitada,
+            @Value("${identidad.cookie.name:VESTA_ID}") String nombre,
+            @Value("${identidad.cookie.max-age:30m}") Duration duracion,
+            @Value("${identidad.cookie.secure:false}") boolean segura,
+            @Value("${identidad.cookie.secret:}") String secreto) {
+        this.habilitada = habilitada;
+        this.nombre = nombre;
+        this.duracion = duracion;
+        this.segura = segura;
+        this.clave = habilitada ? crearClave(secreto) : null;
+    }
+
+    public boolean isHabilitada() {
+        return habilitada;
+    }
+
+    public void escribir(HttpServletResponse response, SesionUsuario usuario) {
+        if (!habilitada) {
+            return;
+        }
+        try {
+            long ahora = Instant.now().getEpochSecond();
+            long expira = ahora + duracion.getSeconds();
+            // Nunca más allá del token: con el token caducado la identidad tampoco vale
+            if (usuario.getTokenExpira() != ValidadorToken.Token.SIN_CADUCIDAD) {
+                expira = Math.min(expira, usuario.getTokenExpira());
+            }
+            if (expira <= ahora) {
+                borrar(response);
+                return;
+            }
+            String valor = cifrar(serializar(usuario, expira));
+            response.addHeader(HttpHeaders.SET_COOKIE, cookie(valor, Duration.ofSeconds(expira - ahora)).toString());
+        } catch (GeneralSecurityException | IOException e) {
+            logger.error("No se pudo generar la cookie de identidad: {}", e.getMessage());
+        }
+    }
+
+    public void borrar(HttpServletResponse response) {
+        if (habilitada) {
+            response.addHeader(HttpHeaders.SET_COOKIE, cookie("", Duration.ZERO).toString());
+        }
+    }
+
+    /**
+     * Identidad de la cookie, o null si no hay, está caducada o no se puede descifrar
+     */
+    public Identidad leer(HttpServletRequest request) {
+        Contenido contenido = leerContenido(request);
+        return contenido != null ? contenido.identidad : null;
+    }
+
+    /**
+     * true si hay cookie y ha consumido más de la mitad de su vida (conviene reemitirla)
+     */
+    public boolean debeRenovarse(HttpServletRequest request) {
+        Contenido contenido = leerContenido(request);
+        return contenido != null
+                && contenido.expira - Instant.now().getEpochSecond() < duracion.getSeconds() / 2;
+    }
+
+    public boolean estaPresente(HttpServletRequest request) {
+        return habilitada && valorCookie(request) != null;
+    }
+
+    private Contenido leerContenido(HttpServletRequest request) {
+        if (!habilitada) {
+            return null;
+        }
+        String valor = valorCookie(request);
+        if (valor == null || valor.isEmpty()) {
+            return null;
+        }
+        try {
+            Contenido contenido = deserializar(descifrar(valor));
+            return contenido.expira > Instant.now().getEpochSecond() ? contenido : null;
+        } catch (GeneralSecurityException | IOException | IllegalArgumentException e) {
+            // Cookie manipulada, de otra clave o de un formato anterior: se ignora
+            logger.debug("Cookie de identidad no válida: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private String valorCookie(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (nombre.equals(cookie.getName())) {
+                return cookie.getValue();
+            }
+        }
+        return null;
+    }
+
+    private ResponseCookie cookie(String valor, Duration maxAge) {
+        return ResponseCookie.from(nombre, valor)
+                .path("/")
+                .httpOnly(true)
+                .secure(segura)
+                .sameSite("Lax")
+                .maxAge(maxAge)
+                .build();
+    }
+
+    private String cifrar(byte[] datos) throws GeneralSecurityException {
+        byte[] iv = new byte[IV_BYTES];
+        random.nextBytes(iv);
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, clave, new GCMParameterSpec(TAG_BITS, iv));
+        cipher.updateAAD(nombre.getBytes(StandardCharsets.UTF_8));
+        byte[] cifrado = cipher.doFinal(datos);
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                ByteBuffer.allocate(iv.length + cifrado.length).put(iv).put(cifrado).array());
+    }
+
+    private byte[] descifrar(String valor) throws GeneralSecurityException {
+        byte[] bytes = Base64.getUrlDecoder().decode(valor);
+        if (bytes.length <= IV_BYTES) {
+            throw new GeneralSecurityException("Cookie demasiado corta");
+        }
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, clave, new GCMParameterSpec(TAG_BITS, bytes, 0, IV_BYTES));
+        cipher.updateAAD(nombre.getBytes(StandardCharsets.UTF_8));
+        return cipher.doFinal(bytes, IV_BYTES, bytes.length - IV_BYTES);
+    }
+
+    private static byte[] serializar(SesionUsuario usuario, long expira) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMATO);
+            out.writeLong(expira);
+            out.writeLong(usuario.getUsuarioId() != null ? usuario.getUsuarioId() : -1L);
+            out.writeUTF(usuario.getRol() != null ? usuario.getRol() : "");
+            out.writeUTF(usuario.getNombre() != null ? usuario.getNombre() : "");
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Contenido deserializar(byte[] datos) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(datos))) {
+            byte formato = in.readByte();
+            if (formato != FORMATO) {
+                throw new IOException("Formato de cookie desconocido: " + formato);
+            }
+            long expira = in.readLong();
+            long id = in.readLong();
+            String rol = in.readUTF();
+            String nombreUsuario = in.readUTF();
+            return new Contenido(new Identidad(id >= 0 ? id : null, rol.isEmpty() ? null : rol,
+                    nombreUsuario.isEmpty() ? null : nombreUsuario), expira);
+        }
+    }
+
+    private SecretKey crearClave(String secreto) {
+        if (secreto == null || secreto.isBlank()) {
+            // Sin secreto compartido cada nodo (y cada arranque) tiene su clave: las cookies
+            // de otro nodo se ignoran y esas páginas caen a la sesión
+            logger.warn("identidad.cookie.secret vacío: se usa una clave aleatoria solo válida en este proceso");
+            byte[] aleatoria = new byte[32];
+            random.nextBytes(aleatoria);
+            return new SecretKeySpec(aleatoria, "AES");
+        }
+        byte[] bytes = Base64.getDecoder().decode(secreto.trim());
+        if (bytes.length != 16 && bytes.length != 24 && bytes.length != 32) {
+            throw new IllegalStateException(
+                    "identidad.cookie.secret debe ser una clave AES de 16, 24 o 32 bytes en Base64");
+        }
+        return new SecretKeySpec(bytes, "AES");
+    }
+
+    private static final class Contenido {
+        private final Identidad identidad;
+        private final long expira;
+
+        Contenido(Identidad identidad, long expira) {
+            this.identidad = identidad;
+            this.expira = expira;
+        }
+    }
+}
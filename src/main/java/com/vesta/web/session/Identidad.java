@@ -0,0 +1,41 @@
+package com.vesta.web.session;
+
+/**
+ * Quién es el usuario y con qué rol, sin el token ni el carrito
+ *
+ * Suficiente para las páginas públicas o de autenticación ligera (landing, login, mis datos).
+ * Con {@code identidad.cookie.enabled=true} sale de la cookie cifrada y esas páginas no
+ * tocan el almacén de sesiones; si no, sale de la SesionUsuario.
+ */
+public final class Identidad {
+
+    private final Long usuarioId;
+    private final String rol;
+    private final String nombre;
+
+    public Identidad(Long usuarioId, String rol, String nombre) {
+        this.usuarioId = usuarioId;
+        this.rol = rol;
+        this.nombre = nombre;
+    }
+
+    public static Identidad de(SesionUsuario usuario) {
+        return new Identidad(usuario.getUsuarioId(), usuario.getRol(), usuario.getNombre());
+    }
+
+    public Long getUsuarioId() {
+        return usuarioId;
+    }
+
+    public String getRol() {
+        return rol;
+    }
+
+    public boolean isAdmin() {
+        return SesionUsuario.ROL_ADMIN.equals(rol);
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+}
@@ -0,0 +1,53 @@
+package com.vesta.web.session;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.MethodParameter;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * Inyecta la Identidad en los parámetros de ese tipo (null si no hay usuario)
+ *
+ * Primero mira la cookie de identidad; solo si no hay una válida consulta la sesión, y en ese
+ * caso emite la cookie para que las siguientes páginas ligeras ya no la necesiten.
+ */
+public class IdentidadArgumentResolver implements HandlerMethodArgumentResolver {
+
+    private final CookieIdentidad cookieIdentidad;
+
+    public IdentidadArgumentResolver(CookieIdentidad cookieIdentidad) {
+        this.cookieIdentidad = cookieIdentidad;
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return Identidad.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+            NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+        if (request == null) {
+            return null;
+        }
+
+        Identidad identidad = cookieIdentidad.leer(request);
+        if (identidad != null) {
+            return identidad;
+        }
+
+        SesionUsuario usuario = SesionUsuario.de(request.getSession(false));
+        if (usuario == null) {
+            return null;
+        }
+        HttpServletResponse response = webRequest.getNativeResponse(HttpServletResponse.class);
+        if (response != null) {
+            cookieIdentidad.escribir(response, usuario);
+        }
+        return Identidad.de(usuario);
+    }
+}
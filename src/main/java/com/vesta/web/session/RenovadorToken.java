@@ -0,0 +1,72 @@
+package com.vesta.web.session;
+
+import com.vesta.web.dto.AuthResponseDTO;
+import com.vesta.web.service.ApiService;
+import jakarta.servlet.http.HttpSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Comprueba la caducidad del token guardado en la sesión antes de que el controlador lo use
+ *
+ * Token caducado: se invalida la sesión y el controlador recibe null (redirige al login sin
+ * llamar a la API). Si la API tiene endpoint de renovación ({@code api.jwt.refresh-path}) y al
+ * token le queda menos de {@code api.jwt.refresh-before}, se renueva antes de que caduque.
+ */
+@Component
+public class RenovadorToken {
+
+    private static final Logger logger = LoggerFactory.getLogger(RenovadorToken.class);
+
+    private final ApiService apiService;
+    private final ValidadorToken validadorToken;
+    private final ActualizadorSesion actualizadorSesion;
+    private final Duration renovarAntes;
+
+    public RenovadorToken(ApiService apiService, ValidadorToken validadorToken,
+            ActualizadorSesion actualizadorSesion,
+            @Value("${api.jwt.refresh-before:5m}") Duration renovarAntes) {
+        this.apiService = apiService;
+        this.validadorToken = validadorToken;
+        this.actualizadorSesion = actualizadorSesion;
+        this.renovarAntes = renovarAntes;
+    }
+
+    /**
+     * La misma SesionUsuario (con el token renovado si tocaba), o null si el token ya caducó
+     */
+    public SesionUsuario vigente(SesionUsuario usuario, HttpSession session) {
+        long restantes = usuario.segundosRestantes();
+        if (restantes <= 0) {
+            logger.info("Token caducado para el usuario {}, se cierra la sesión", usuario.getUsuarioId());
+            session.invalidate();
+            return null;
+        }
+        if (restantes < renovarAntes.getSeconds() && apiService.isRenovacionTokenHabilitada()) {
+            return renovar(usuario, session);
+        }
+        return usuario;
+    }
+
+    // Si la renovación falla se sigue con el token actual, que aún es válido
+    private SesionUsuario renovar(SesionUsuario usuario, HttpSession session) {
+        try {
+            AuthResponseDTO respuesta = apiService.renovarToken(usuario.getToken());
+            ValidadorToken.Token token = validadorToken.validar(respuesta.getToken(), usuario.getRol());
+            // Sobre la versión guardada, para no pisar cambios del carrito hechos desde otra pestaña
+            SesionUsuario renovada = actualizadorSesion.modificar(session, actual -> {
+                actual.renovarToken(respuesta.getToken(), token);
+                return actual;
+            });
+            logger.debug("Token renovado para el usuario {}", usuario.getUsuarioId());
+            return renovada != null ? renovada : usuario;
+        } catch (RuntimeException e) {
+            logger.warn("No se pudo renovar el token del usuario {}: {}", usuario.getUsuarioId(), e.getMessage());
+            return usuario;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.vesta.web.session;
+
+import com.vesta.web.dto.AuthResponseDTO;
+import com.vesta.web.dto.CartItem;
+import jakarta.servlet.http.HttpSession;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * Estado de sesión del usuario autenticado en un único atributo tipado
+ *
+ * Sustituye a los atributos sueltos token, rol, usuarioNombre, usuarioId y carrito.
+ * Se serializa a mano (Externalizable) para que ocupe lo mínimo en el almacén de sesiones
+ * (Spring Session JDBC, una fila por atributo): sin descriptores de clase por campo ni objetos envoltorio.
+ * Los controladores lo reciben como parámetro (ver SesionUsuarioArgumentResolver).
+ */
+public class SesionUsuario implements Externalizable {
+
+    private static final long serialVersionUID = 1L;
+    // 2: añade la caducidad del token. Se siguen leyendo las sesiones guardadas con el formato 1
+    private static final byte FORMATO = 2;
+
+    public static final String ATRIBUTO = "usuario";
+    // Atributo de petición con el usuario ya comprobado (token vigente o renovado); lo usan las plantillas
+    public static final String ATRIBUTO_VIGENTE = "usuarioVigente";
+    public static final String ROL_ADMIN = "ADMIN";
+
+    private String token;
+    private String rol;
+    private String nombre;
+    private Long usuarioId;
+    // Caducidad del token en segundos epoch (ValidadorToken.Token.SIN_CADUCIDAD si no se conoce)
+    private long tokenExpira = ValidadorToken.Token.SIN_CADUCIDAD;
+    private final Carrito carrito = new Carrito();
+
+    // Requerido por Externalizable
+    public SesionUsuario() {
+    }
+
+    public SesionUsuario(String token, String rol, String nombre, Long usuarioId) {
+        this.token = token;
+        this.rol = rol;
+        this.nombre = nombre;
+        this.usuarioId = usuarioId;
+    }
+
+    public static SesionUsuario desde(AuthResponseDTO auth, ValidadorToken.Token token) {
+        SesionUsuario usuario = new SesionUsuario(auth.getToken(), token.getRol(), auth.getNombre(), auth.getId());
+        usuario.tokenExpira = token.getExpira();
+        return usuario;
+    }
+
+    public static SesionUsuario de(HttpSession session) {
+        return session != null ? (SesionUsuario) session.getAttribute(ATRIBUTO) : null;
+    }
+
+    /**
+     * Vuelve a guardar el atributo tras modificarlo, para que un almacén de sesiones externo
+     * detecte el cambio. Los cambios que pueden llegar a la vez desde varias pestañas (carrito,
+     * renovación del token) van por ActualizadorSesion.
+     */
+    public void guardarEn(HttpSession session) {
+        session.setAttribute(ATRIBUTO, this);
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public long getTokenExpira() {
+        return tokenExpira;
+    }
+
+    /**
+     * Segundos que le quedan al token (Long.MAX_VALUE si no tiene caducidad)
+     */
+    public long segundosRestantes() {
+        if (tokenExpira == ValidadorToken.Token.SIN_CADUCIDAD) {
+            return Long.MAX_VALUE;
+        }
+        return tokenExpira - Instant.now().getEpochSecond();
+    }
+
+    public boolean isTokenCaducado() {
+        return segundosRestantes() <= 0;
+    }
+
+    public void renovarToken(String token, ValidadorToken.Token validado) {
+        this.token = token;
+        this.tokenExpira = validado.getExpira();
+    }
+
+    public String getRol() {
+        return rol;
+    }
+
+    public boolean isAdmin() {
+        return ROL_ADMIN.equals(rol);
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public Long getUsuarioId() {
+        return usuarioId;
+    }
+
+    public Carrito getCarrito() {
+        return carrito;
+    }
+
+    public void vaciarCarrito() {
+        carrito.vaciar();
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeByte(FORMATO);
+        escribir(out, token);
+        escribir(out, rol);
+        escribir(out, nombre);
+        out.writeLong(usuarioId != null ? usuarioId : -1L);
+        out.writeLong(tokenExpira);
+
+        Collection<CartItem> items = carrito.itemsInternos();
+        out.writeShort(items.size());
+        for (CartItem item : items) {
+            escribir(out, item.getSeguroId());
+            escribir(out, item.getNombre());
+            escribir(out, item.getPrecio() != null ? item.getPrecio().toPlainString() : null);
+            escribir(out, item.getImagenUrl());
+            out.writeInt(item.getCantidad() != null ? item.getCantidad() : 0);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        byte formato = in.readByte();
+        if (formato != 1 && formato != FORMATO) {
+            throw new IOException("Formato de sesión desconocido: " + formato);
+        }
+        token = leer(in);
+        rol = leer(in);
+        nombre = leer(in);
+        long id = in.readLong();
+        usuarioId = id >= 0 ? id : null;
+        tokenExpira = formato >= 2 ? in.readLong() : ValidadorToken.Token.SIN_CADUCIDAD;
+
+        carrito.vaciar();
+        int items = in.readUnsignedShort();
+        for (int i = 0; i < items; i++) {
+            String seguroId = leer(in);
+            String nombreItem = leer(in);
+            String precio = leer(in);
+            String imagenUrl = leer(in);
+            int cantidad = in.readInt();
+            carrito.restaurar(new CartItem(seguroId, nombreItem, precio != null ? new BigDecimal(precio) : null,
+                    imagenUrl, cantidad));
+        }
+    }
+
+    private static void escribir(ObjectOutput out, String valor) throws IOException {
+        out.writeBoolean(valor != null);
+        if (valor != null) {
+            out.writeUTF(valor);
+        }
+    }
+
+    private static String leer(ObjectInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,63 @@
+package com.vesta.web.session;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.core.MethodParameter;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * Inyecta la SesionUsuario en cualquier parámetro de controlador de ese tipo.
+ * Devuelve null si no hay sesión iniciada (no crea sesiones nuevas).
+ *
+ * Mantiene la cookie de identidad alineada con la sesión: la borra si la sesión ya no existe
+ * (evita que la landing redirija a un dashboard que devuelve a la landing) y la renueva a mitad de vida.
+ * Con el token caducado se comporta como si no hubiera sesión (ver RenovadorToken).
+ * El usuario resultante queda en la petición como {@code ${usuarioVigente}} para las plantillas
+ * (cabecera, token de las llamadas desde el navegador), en lugar de leer la sesión sin comprobar.
+ */
+public class SesionUsuarioArgumentResolver implements HandlerMethodArgumentResolver {
+
+    private final CookieIdentidad cookieIdentidad;
+    private final RenovadorToken renovadorToken;
+
+    public SesionUsuarioArgumentResolver(CookieIdentidad cookieIdentidad, RenovadorToken renovadorToken) {
+        this.cookieIdentidad = cookieIdentidad;
+        this.renovadorToken = renovadorToken;
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return SesionUsuario.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+            NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+        if (request == null) {
+            return null;
+        }
+        HttpSession session = request.getSession(false);
+        SesionUsuario usuario = SesionUsuario.de(session);
+        if (usuario != null) {
+            usuario = renovadorToken.vigente(usuario, session);
+        }
+        if (usuario != null) {
+            request.setAttribute(SesionUsuario.ATRIBUTO_VIGENTE, usuario);
+        }
+
+        HttpServletResponse response = webRequest.getNativeResponse(HttpServletResponse.class);
+        if (response != null && cookieIdentidad.isHabilitada()) {
+            if (usuario == null && cookieIdentidad.estaPresente(request)) {
+                cookieIdentidad.borrar(response);
+            } else if (usuario != null && cookieIdentidad.debeRenovarse(request)) {
+                cookieIdentidad.escribir(response, usuario);
+            }
+        }
+        return usuario;
+    }
+}
@@ -0,0 +1,138 @@
+package com.vesta.web.session;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.MACVerifier;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Validación local del JWT que devuelve la API
+ *
+ * Comprueba firma (HMAC con {@code api.jwt.secret}), caducidad y claim de rol una sola vez, al
+ * recibir el token; después basta con comparar la caducidad guardada en la SesionUsuario para no
+ * llamar al backend con un token que va a responder 401.
+ * Sin secreto configurado no se verifica la firma, solo la caducidad y el rol.
+ */
+@Component
+public class ValidadorToken {
+
+    private static final Logger logger = LoggerFactory.getLogger(ValidadorToken.class);
+
+    private final JWSVerifier verificador;
+    private final String claimRol;
+    private final Duration margenReloj;
+
+    public ValidadorToken(@Value("${api.jwt.secret:}") String secreto,
+            @Value("${api.jwt.secret-encoding:base64}") String codificacion,
+            @Value("${api.jwt.role-claim:rol}") String claimRol,
+            @Value("${api.jwt.clock-skew:30s}") Duration margenReloj) {
+        this.verificador = crearVerificador(secreto, codificacion);
+        this.claimRol = claimRol;
+        this.margenReloj = margenReloj;
+    }
+
+    /**
+     * Valida el token recién recibido de la API.
+     *
+     * @param rolEsperado rol que la API devolvió junto al token (puede ser null)
+     * @throws RuntimeException con mensaje para el usuario si el token no es válido
+     */
+    public Token validar(String token, String rolEsperado) {
+        if (token == null || token.isBlank()) {
+            throw new RuntimeException("La API no devolvió un token de sesión");
+        }
+
+        JWTClaimsSet claims;
+        try {
+            SignedJWT jwt = SignedJWT.parse(token);
+            if (verificador != null && !jwt.verify(verificador)) {
+                throw new RuntimeException("Token de sesión con firma no válida");
+            }
+            claims = jwt.getJWTClaimsSet();
+        } catch (ParseException | JOSEException e) {
+            logger.warn("Token de la API no válido: {}", e.getMessage());
+            throw new RuntimeException("Token de sesión no válido");
+        }
+
+        Date expiracion = claims.getExpirationTime();
+        long expira = expiracion != null ? expiracion.toInstant().getEpochSecond() : Token.SIN_CADUCIDAD;
+        if (expira != Token.SIN_CADUCIDAD && Instant.now().minus(margenReloj).getEpochSecond() >= expira) {
+            throw new RuntimeException("El token de sesión ya ha caducado");
+        }
+
+        String rol = rolDe(claims);
+        if (rol != null && rolEsperado != null && !rol.equalsIgnoreCase(rolEsperado)) {
+            logger.warn("El rol del token ({}) no coincide con el de la respuesta ({})", rol, rolEsperado);
+            throw new RuntimeException("Token de sesión no válido");
+        }
+
+        return new Token(claims.getSubject(), rol != null ? rol : rolEsperado, expira);
+    }
+
+    private String rolDe(JWTClaimsSet claims) {
+        Object valor = claims.getClaim(claimRol);
+        if (valor == null) {
+            return null;
+        }
+        String rol = valor.toString();
+        // Algunos backends lo emiten como ROLE_ADMIN
+        return rol.startsWith("ROLE_") ? rol.substring(5) : rol;
+    }
+
+    private static JWSVerifier crearVerificador(String secreto, String codificacion) {
+        if (secreto == null || secreto.isBlank()) {
+            logger.warn("api.jwt.secret vacío: los tokens se validan sin comprobar la firma");
+            return null;
+        }
+        byte[] clave = "base64".equalsIgnoreCase(codificacion)
+                ? Base64.getDecoder().decode(secreto.trim())
+                : secreto.getBytes(StandardCharsets.UTF_8);
+        try {
+            return new MACVerifier(clave);
+        } catch (JOSEException e) {
+            throw new IllegalStateException("api.jwt.secret no es una clave HMAC válida (mínimo 256 bits)", e);
+        }
+    }
+
+    /**
+     * Datos del token ya validado
+     */
+    public static final class Token {
+        public static final long SIN_CADUCIDAD = -1L;
+
+        private final String sujeto;
+        private final String rol;
+        private final long expira;
+
+        Token(String sujeto, String rol, long expira) {
+            this.sujeto = sujeto;
+            this.rol = rol;
+            this.expira = expira;
+        }
+
+        public String getSujeto() {
+            return sujeto;
+        }
+
+        public String getRol() {
+            return rol;
+        }
+
+        // Segundos epoch, o SIN_CADUCIDAD si el token no tiene claim exp
+        public long getExpira() {
+            return expira;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.vesta.web.session;
+
+import com.vesta.web.dto.CartItem;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.session.MapSession;
+import org.springframework.session.MapSessionRepository;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Varias peticiones de la misma sesión añadiendo al carrito a la vez no pierden ningún cambio
+ */
+class ActualizadorSesionTest {
+
+    private static final int HILOS = 16;
+    private static final int ALTAS_POR_HILO = 250;
+
+    private static final CartItem VIAJE = new CartItem("1", "Viaje", new BigDecimal("9.99"), null, 1);
+    private static final CartItem MOVIL = new CartItem("2", "Móvil", new BigDecimal("4.50"), null, 1);
+
+    @Test
+    void altasConcurrentesConAlmacenQueDeserializa() throws Exception {
+        AlmacenSerializado almacen = new AlmacenSerializado();
+        MapSession guardada = new MapSession();
+        guardada.setAttribute(SesionUsuario.ATRIBUTO, new SesionUsuario("token", "USUARIO", "Ana", 42L));
+        almacen.save(guardada);
+
+        ActualizadorSesion actualizador = new ActualizadorSesion(proveedor(almacen));
+        MockHttpSession session = new MockHttpSession(null, guardada.getId());
+
+        lanzar(() -> actualizador.modificar(session, usuario -> usuario.getCarrito().agregar(VIAJE)),
+                () -> actualizador.modificar(session, usuario -> usuario.getCarrito().agregar(MOVIL)));
+
+        Carrito carrito = almacen.findById(guardada.getId())
+                .<SesionUsuario>getAttribute(SesionUsuario.ATRIBUTO).getCarrito();
+        comprobar(carrito);
+    }
+
+    @Test
+    void altasConcurrentesSinSpringSession() throws Exception {
+        MockHttpSession session = new MockHttpSession();
+        new SesionUsuario("token", "USUARIO", "Ana", 42L).guardarEn(session);
+        ActualizadorSesion actualizador = new ActualizadorSesion(proveedor(null));
+
+        lanzar(() -> actualizador.modificar(session, usuario -> usuario.getCarrito().agregar(VIAJE)),
+                () -> actualizador.modificar(session, usuario -> usuario.getCarrito().agregar(MOVIL)));
+
+        comprobar(SesionUsuario.de(session).getCarrito());
+    }
+
+    @Test
+    void sinUsuarioNoModificaNada() {
+        AlmacenSerializado almacen = new AlmacenSerializado();
+        MapSession guardada = new MapSession();
+        almacen.save(guardada);
+        ActualizadorSesion actualizador = new ActualizadorSesion(proveedor(almacen));
+
+        Integer resultado = actualizador.modificar(new MockHttpSession(null, guardada.getId()),
+                usuario -> usuario.getCarrito().agregar(VIAJE));
+
+        assertThat(resultado).isNull();
+        assertThat(almacen.findById(guardada.getId()).<SesionUsuario>getAttribute(SesionUsuario.ATRIBUTO)).isNull();
+    }
+
+    // La mitad de los hilos añade un seguro y la otra mitad el otro, todos a la vez
+    private static void lanzar(Runnable alta1, Runnable alta2) throws Exception {
+        ExecutorService hilos = Executors.newFixedThreadPool(HILOS);
+        CountDownLatch salida = new CountDownLatch(1);
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int h = 0; h < HILOS; h++) {
+                Runnable alta = h % 2 == 0 ? alta1 : alta2;
+                tareas.add(hilos.submit(() -> {
+                    salida.await();
+                    for (int i = 0; i < ALTAS_POR_HILO; i++) {
+                        alta.run();
+                    }
+                    return null;
+                }));
+            }
+            salida.countDown();
+            for (Future<?> tarea : tareas) {
+                tarea.get();
+            }
+        } finally {
+            hilos.shutdownNow();
+        }
+    }
+
+    private static void comprobar(Carrito carrito) {
+        int unidadesPorSeguro = HILOS / 2 * ALTAS_POR_HILO;
+        assertThat(carrito.getTamano()).isEqualTo(2);
+        assertThat(carrito.getItems())
+                .extracting(CartItem::getSeguroId, CartItem::getCantidad)
+                .containsExactlyInAnyOrder(
+                        tuple("1", unidadesPorSeguro),
+                        tuple("2", unidadesPorSeguro));
+        BigDecimal esperado = VIAJE.getPrecio().add(MOVIL.getPrecio()).multiply(BigDecimal.valueOf(unidadesPorSeguro));
+        assertThat(carrito.getTotal()).isEqualByComparingTo(esperado);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ObjectProvider<SessionRepository<?>> proveedor(SessionRepository<?> almacen) {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        if (almacen != null) {
+            beans.addBean("sessionRepository", almacen);
+        }
+        return (ObjectProvider<SessionRepository<?>>) (ObjectProvider<?>) beans.getBeanProvider(SessionRepository.class);
+    }
+
+    /**
+     * Como el almacén JDBC: cada lectura devuelve atributos deserializados, nunca la instancia guardada,
+     * así que una petición que guarde una copia vieja pisaría los cambios de las demás
+     */
+    private static final class AlmacenSerializado implements SessionRepository<MapSession> {
+        private final Map<String, Session> sesiones = new ConcurrentHashMap<>();
+        private final MapSessionRepository delegado = new MapSessionRepository(sesiones);
+
+        @Override
+        public MapSession createSession() {
+            return delegado.createSession();
+        }
+
+        @Override
+        public void save(MapSession session) {
+            MapSession copia = new MapSession(session);
+            for (String nombre : session.getAttributeNames()) {
+                copia.setAttribute(nombre, serializar(session.getAttribute(nombre)));
+            }
+            delegado.save(copia);
+        }
+
+        @Override
+        public MapSession findById(String id) {
+            MapSession guardada = delegado.findById(id);
+            if (guardada == null) {
+                return null;
+            }
+            for (String nombre : guardada.getAttributeNames()) {
+                guardada.setAttribute(nombre, deserializar(guardada.getAttribute(nombre)));
+            }
+            return guardada;
+        }
+
+        @Override
+        public void deleteById(String id) {
+            delegado.deleteById(id);
+        }
+
+        private static byte[] serializar(Object valor) {
+            try (ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                 ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(valor);
+                out.flush();
+                return bytes.toByteArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private static Object deserializar(byte[] datos) {
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(datos))) {
+                return in.readObject();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}